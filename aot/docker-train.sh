@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+# Runs aot/train.sh during the image build against a throwaway Postgres with
+# the migrations applied, which is discarded with the build stage, then
+# aot/verify.sh so the build fails when the runtime can't map the cache.
+#
+#   ./aot/docker-train.sh <java> <module path> <output dir>
+set -euo pipefail
+
+PGDATA=/tmp/aot-pgdata
+runuser -u postgres -- initdb -D "$PGDATA" -U postgres --auth=trust >/dev/null
+runuser -u postgres -- pg_ctl -D "$PGDATA" -l /tmp/aot-postgres.log -o "-k /tmp" -w start
+trap 'runuser -u postgres -- pg_ctl -D "$PGDATA" -m fast -w stop >/dev/null' EXIT
+
+for script in $(ls migrations/scripts/2*.sql | sort); do
+  # apply the do part only, the undo section follows the @UNDO marker
+  sed '/^-- \/\/@UNDO/,$d' "$script" |
+    psql -q -v ON_ERROR_STOP=1 -h localhost -U postgres postgres
+done
+
+export POSTGRES_URL=jdbc:postgresql://localhost/postgres
+./aot/train.sh "$@"
+./aot/verify.sh "$1" "$2" "$3/app.aot"
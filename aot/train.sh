@@ -0,0 +1,103 @@
+#!/usr/bin/env bash
+# Builds the AOT cache (JEP 483) of the server from a short training run.
+#
+# The server is started in record mode, driven through the requests of the
+# postman collection (register, login, articles, comments, favorites,
+# follows, feed, search, tags, compressed responses), stopped, and the
+# recorded classes are then loaded and linked into the cache. The cache only
+# matches the JVM and module path it was trained with, so run this with the
+# java and the module path the server is started with.
+#
+# Needs curl and a migrated database (POSTGRES_URL etc. as for the server).
+#
+#   ./aot/train.sh [java] [module path] [output dir]
+set -euo pipefail
+
+JAVA=${1:-java}
+MODULES=${2:-./target/modules}
+OUT=${3:-./target/aot}
+PORT=${PORT:-8080}
+METRICS_PORT=${METRICS_PORT:-9091}
+BASE=http://localhost:$PORT/api
+RUN=aot-$RANDOM$RANDOM
+
+mkdir -p "$OUT"
+CONF=$OUT/app.aotconf
+CACHE=$OUT/app.aot
+
+"$JAVA" -XX:AOTMode=record -XX:AOTConfiguration="$CONF" \
+  -p "$MODULES" -m avaje.realworld >"$OUT/training.log" 2>&1 &
+SERVER=$!
+trap 'kill $SERVER 2>/dev/null || true' EXIT
+
+for _ in $(seq 1 300); do
+  curl -sf "$BASE/tags" >/dev/null && break
+  sleep 0.2
+done
+curl -sf "$BASE/tags" >/dev/null || { cat "$OUT/training.log"; exit 1; }
+
+# error responses are part of the training too, so statuses are not checked
+json() {
+  curl -s -H 'Content-Type: application/json' ${TOKEN:+-H "Authorization: Token $TOKEN"} "$@"
+}
+
+field() {
+  sed -E "s/.*\"$1\": ?\"([^\"]+)\".*/\\1/"
+}
+
+register() {
+  json "$BASE/users" \
+    -d "{\"user\":{\"username\":\"$1\",\"email\":\"$1@example.com\",\"password\":\"password\"}}" |
+    field token
+}
+
+for i in $(seq 1 5); do
+  TOKEN=""
+  AUTHOR=$RUN-author-$i
+  READER=$RUN-reader-$i
+  AUTHOR_TOKEN=$(register "$AUTHOR")
+  register "$READER" >/dev/null
+  TOKEN=$(json "$BASE/users/login" \
+    -d "{\"user\":{\"email\":\"$READER@example.com\",\"password\":\"password\"}}" | field token)
+
+  json -X POST "$BASE/profiles/$AUTHOR/follow" >/dev/null
+  SLUG=$(TOKEN=$AUTHOR_TOKEN json "$BASE/articles" \
+    -d "{\"article\":{\"title\":\"Training $i\",\"description\":\"aot\",\"body\":\"body $i\",\"tagList\":[\"aot\",\"training-$i\"]}}" |
+    field slug)
+
+  json "$BASE/user" >/dev/null
+  json -X PUT "$BASE/user" -d "{\"user\":{\"bio\":\"reader $i\"}}" >/dev/null
+  json "$BASE/profiles/$AUTHOR" >/dev/null
+  json "$BASE/articles?limit=20" >/dev/null
+  json "$BASE/articles?tag=aot&author=$AUTHOR&favorited=$READER" >/dev/null
+  json "$BASE/articles/feed" >/dev/null
+  json "$BASE/articles/search?q=training" >/dev/null
+  json "$BASE/articles/$SLUG" >/dev/null
+  json -H "If-None-Match: \"none\"" "$BASE/articles/$SLUG" >/dev/null
+  json -X POST "$BASE/articles/$SLUG/favorite" >/dev/null
+  json -X DELETE "$BASE/articles/$SLUG/favorite" >/dev/null
+  COMMENT=$(json "$BASE/articles/$SLUG/comments" -d '{"comment":{"body":"training"}}' | field id)
+  json "$BASE/articles/$SLUG/comments" >/dev/null
+  json -X DELETE "$BASE/articles/$SLUG/comments/$COMMENT" >/dev/null
+  json -H 'Accept-Encoding: gzip' "$BASE/articles?limit=100" -o /dev/null
+  json -X DELETE "$BASE/profiles/$AUTHOR/follow" >/dev/null
+  TOKEN=$AUTHOR_TOKEN json -X PUT "$BASE/articles/$SLUG" \
+    -d '{"article":{"body":"updated"}}' >/dev/null
+  TOKEN=$AUTHOR_TOKEN json -X DELETE "$BASE/articles/$SLUG" >/dev/null
+  json "$BASE/tags" >/dev/null
+  curl -s "http://localhost:$METRICS_PORT/metrics" >/dev/null
+  curl -s "http://localhost:$PORT/" >/dev/null
+  # the training users go again, deleting them deletes their rows
+  TOKEN=$AUTHOR_TOKEN json -X DELETE "$BASE/user" >/dev/null
+  json -X DELETE "$BASE/user" >/dev/null
+done
+
+# the configuration is written when the JVM exits
+kill "$SERVER"
+wait "$SERVER" 2>/dev/null || true
+trap - EXIT
+
+"$JAVA" -XX:AOTMode=create -XX:AOTConfiguration="$CONF" -XX:AOTCache="$CACHE" \
+  -p "$MODULES" -m avaje.realworld
+rm -f "$CONF"
+echo "AOT cache $CACHE ($(du -h "$CACHE" | cut -f1))"
@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# Checks that an AOT cache made by aot/train.sh is mapped by the given java and
+# module path: the server is started with -XX:AOTMode=on, which refuses to start
+# when the cache can't be used, until it answers GET /api/tags, and the
+# application classes must then have been loaded from the cache. The -Xlog:cds
+# output and the class load log are kept in the output dir.
+#
+# Needs curl and a migrated database (POSTGRES_URL etc. as for the server).
+#
+#   ./aot/verify.sh [java] [module path] [cache]
+set -euo pipefail
+
+JAVA=${1:-java}
+MODULES=${2:-./target/modules}
+CACHE=${3:-./target/aot/app.aot}
+PORT=${PORT:-8080}
+OUT=$(dirname "$CACHE")
+LOG=$OUT/verify.log
+CLASSES=$OUT/verify-classes.log
+
+"$JAVA" -XX:AOTCache="$CACHE" -XX:AOTMode=on -Xlog:cds -Xlog:class+load:file="$CLASSES" \
+  -p "$MODULES" -m avaje.realworld >"$LOG" 2>&1 &
+SERVER=$!
+trap 'kill $SERVER 2>/dev/null || true' EXIT
+
+for _ in $(seq 1 300); do
+  curl -sf "http://localhost:$PORT/api/tags" >/dev/null && break
+  kill -0 "$SERVER" 2>/dev/null || break
+  sleep 0.2
+done
+if ! curl -sf "http://localhost:$PORT/api/tags" >/dev/null; then
+  cat "$LOG"
+  echo "AOT cache $CACHE not usable with $JAVA -p $MODULES" >&2
+  exit 1
+fi
+kill "$SERVER"
+wait "$SERVER" 2>/dev/null || true
+trap - EXIT
+
+shared=$(grep -c 'com\.avaje\.jdk\.realworld\..* source: shared objects file' "$CLASSES" || true)
+loaded=$(grep -c 'com\.avaje\.jdk\.realworld\.' "$CLASSES" || true)
+grep -i 'aot\|shared\|mapped' "$LOG" | head -20 || true
+echo "application classes from the AOT cache: $shared of $loaded"
+if [ "$shared" -eq 0 ]; then
+  echo "no application class was loaded from $CACHE" >&2
+  exit 1
+fi
@@ -0,0 +1,114 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * CPU cost per response of deflating with a new Deflater per request vs a reused one,
+ * over article list JSON of the sizes the list endpoint returns.
+ *
+ * <pre>java bench/CompressionCost.java [level]</pre>
+ */
+public class CompressionCost {
+
+  private static final int ITERATIONS = 5_000;
+
+  private static int level = Deflater.DEFAULT_COMPRESSION;
+  private static Deflater deflater;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length > 0) {
+      level = Integer.parseInt(args[0]);
+    }
+    deflater = new Deflater(level, true);
+    System.out.printf(
+        "%-8s %-8s %-8s %-8s %-12s %-12s%n",
+        "articles", "bytes", "deflated", "ratio", "new us/op", "pooled us/op");
+    for (int articles : new int[] {1, 5, 20, 60}) {
+      var body = page(articles);
+      var gzipped = perRequest(body);
+      // warm up both paths before timing
+      for (int i = 0; i < ITERATIONS; i++) {
+        perRequest(body);
+        pooled(body);
+      }
+      var perRequest = time(() -> perRequest(body));
+      var pooled = time(() -> pooled(body));
+      System.out.printf(
+          "%-8d %-8d %-8d %-8.2f %-12.1f %-12.1f%n",
+          articles,
+          body.length,
+          gzipped.length,
+          (double) body.length / gzipped.length,
+          perRequest,
+          pooled);
+    }
+  }
+
+  private static byte[] perRequest(byte[] body) throws IOException {
+    var wire = new ByteArrayOutputStream(body.length);
+    var def = new Deflater(level, true);
+    try (var out = new DeflaterOutputStream(wire, def, 8192)) {
+      out.write(body);
+    } finally {
+      def.end();
+    }
+    return wire.toByteArray();
+  }
+
+  private static byte[] pooled(byte[] body) throws IOException {
+    var wire = new ByteArrayOutputStream(body.length);
+    deflater.reset();
+    var out = new DeflaterOutputStream(wire, deflater, 8192);
+    out.write(body);
+    out.finish();
+    return wire.toByteArray();
+  }
+
+  interface Op {
+    byte[] run() throws IOException;
+  }
+
+  private static double time(Op op) throws IOException {
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      op.run();
+    }
+    return (System.nanoTime() - start) / 1000.0 / ITERATIONS;
+  }
+
+  /** Article list page shaped like the list endpoint's JSON, with varied text per article. */
+  private static byte[] page(int articles) {
+    var words =
+        "the quick brown fox jumps over lazy dogs while reading about dragons postgres jsonb"
+            .split(" ");
+    var random = new java.util.Random(articles);
+    var sb = new StringBuilder("{\"articles\": [");
+    for (int i = 0; i < articles; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append("{\"slug\": \"article-").append(random.nextInt(1_000_000)).append('"');
+      sb.append(", \"title\": \"").append(text(random, words, 8)).append('"');
+      sb.append(", \"description\": \"").append(text(random, words, 120)).append('"');
+      sb.append(", \"tagList\": [\"dragons\", \"training\"]");
+      sb.append(", \"createdAt\": \"2026-10-18T09:00:00.000Z\"");
+      sb.append(", \"updatedAt\": \"2026-10-18T09:00:00.000Z\"");
+      sb.append(", \"favorited\": false, \"favoritesCount\": ").append(random.nextInt(500));
+      sb.append(", \"author\": {\"username\": \"user").append(random.nextInt(10_000));
+      sb.append("\", \"bio\": \"").append(text(random, words, 12));
+      sb.append("\", \"image\": \"https://api.realworld.io/images/smiley-cyrus.jpeg\"");
+      sb.append(", \"following\": false}}");
+    }
+    sb.append("], \"articlesCount\": ").append(articles).append('}');
+    return sb.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+  }
+
+  private static String text(java.util.Random random, String[] words, int count) {
+    var sb = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      sb.append(i == 0 ? "" : " ").append(words[random.nextInt(words.length)]);
+    }
+    return sb.toString();
+  }
+}
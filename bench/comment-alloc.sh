@@ -0,0 +1,38 @@
+#!/usr/bin/env bash
+# Heap allocated by the server while the comment-storm load test runs, with
+# JFR allocation sampling and GC logging on the server.
+#
+# Prints the allocation rate and the top allocation sites of the comments
+# handlers, and the GC pauses of the run. Run it on the commit before and after
+# a change to the comments response path and compare.
+#
+# Needs a JDK 21+ `jfr` on the PATH, a built jar (mvn package) and a migrated
+# local database.
+#
+#   ./bench/comment-alloc.sh [concurrency] [duration seconds]
+set -euo pipefail
+
+CONCURRENCY=${1:-64}
+DURATION=${2:-60}
+PORT=${PORT:-8080}
+OUT=./target/comment-alloc
+mkdir -p "$OUT"
+
+java -XX:StartFlightRecording=settings=profile,filename="$OUT/server.jfr" \
+  -Xlog:gc:file="$OUT/gc.log" \
+  -p ./target/modules -m avaje.realworld >/dev/null 2>&1 &
+SERVER=$!
+trap 'kill $SERVER 2>/dev/null || true' EXIT
+until curl -sf "http://localhost:$PORT/api/tags" >/dev/null; do sleep 0.2; done
+
+mvn -q -Pload-test verify -Dloadtest.args="--url http://localhost:$PORT/api \
+  --scenarios comment-storm --concurrency $CONCURRENCY --duration $DURATION \
+  --report $OUT/report.json"
+
+# the recording is written when the JVM exits
+kill "$SERVER"
+wait "$SERVER" || true
+
+jfr view --width 160 gc-allocation-rate "$OUT/server.jfr"
+jfr view --width 160 allocation-by-site "$OUT/server.jfr" | head -30
+grep -c 'Pause' "$OUT/gc.log" | xargs echo 'gc pauses:'
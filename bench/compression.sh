@@ -0,0 +1,40 @@
+#!/usr/bin/env bash
+# Bytes on the wire and server CPU per request for article list pages of
+# several sizes, with and without Accept-Encoding: gzip.
+#
+# Needs wrk, a built jar (mvn package) and a migrated local database holding
+# at least 100 articles.
+#
+#   ./bench/compression.sh [connections] [duration]
+set -euo pipefail
+
+CONNECTIONS=${1:-32}
+DURATION=${2:-15s}
+PORT=${PORT:-8080}
+BASE=http://localhost:$PORT/api
+TICKS=$(getconf CLK_TCK)
+
+java -p ./target/modules -m avaje.realworld >/dev/null 2>&1 &
+SERVER=$!
+trap 'kill $SERVER 2>/dev/null || true' EXIT
+until curl -sf "$BASE/tags" >/dev/null; do sleep 0.2; done
+
+cpu_ticks() {
+  awk '{print $14 + $15}' "/proc/$SERVER/stat"
+}
+
+printf '%-6s %-9s %-10s %-12s %s\n' limit encoding bytes requests/s 'cpu us/req'
+for limit in 1 5 20 100; do
+  url="$BASE/articles?limit=$limit"
+  for encoding in identity gzip; do
+    bytes=$(curl -s -o /dev/null -w '%{size_download}' -H "Accept-Encoding: $encoding" "$url")
+    before=$(cpu_ticks)
+    out=$(wrk -t2 -c"$CONNECTIONS" -d"$DURATION" -H "Accept-Encoding: $encoding" "$url")
+    after=$(cpu_ticks)
+    requests=$(awk '/requests in/ {print $1}' <<<"$out")
+    rps=$(awk '/^Requests\/sec/ {print $2}' <<<"$out")
+    cpu=$(awk -v t="$((after - before))" -v hz="$TICKS" -v n="$requests" \
+      'BEGIN {printf "%.1f", t / hz * 1000000 / n}')
+    printf '%-6s %-9s %-10s %-12s %s\n' "$limit" "$encoding" "$bytes" "$rps" "$cpu"
+  done
+done
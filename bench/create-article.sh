@@ -0,0 +1,86 @@
+#!/usr/bin/env bash
+# Articles per second for 0, 5 and 20 tags: the previous statement-per-tag
+# path against the single CTE statement used by createArticleHandler.
+#
+# Needs pgbench and a migrated local database (see README.md). Benchmark rows
+# are created under a dedicated user that is deleted again at the end.
+#
+#   ./bench/create-article.sh [clients] [seconds]
+set -euo pipefail
+
+CLIENTS=${1:-8}
+SECONDS_PER_RUN=${2:-20}
+PG="-h ${PGHOST:-localhost} -U ${PGUSER:-postgres} ${PGDATABASE:-postgres}"
+AUTHOR=00000000-0000-0000-0000-00000000b005
+WORK=$(mktemp -d)
+trap 'psql $PG -q -c "delete from realworld.user where id = '"'$AUTHOR'"'" >/dev/null; rm -rf $WORK' EXIT
+
+psql $PG -q <<SQL
+insert into realworld.user (id, username, password_hash, email)
+values ('$AUTHOR', 'bench-create-article', '\x00', 'bench-create-article@example.com')
+on conflict do nothing;
+insert into realworld.tag (name)
+select 'bench-tag-' || g from generate_series(1, 20) g
+on conflict do nothing;
+SQL
+
+tags_array() {
+  local n=$1 names=""
+  for ((i = 1; i <= n; i++)); do names+="${names:+,}bench-tag-$i"; done
+  echo "$names"
+}
+
+# before: article insert, one upsert per tag and one article_tag insert per tag
+write_before() {
+  local n=$1 file=$WORK/before-$1.sql
+  {
+    echo "\\set n random(1, 2000000000)"
+    echo "BEGIN;"
+    echo "INSERT INTO realworld.article(user_id, title, slug, description, body) VALUES ('$AUTHOR', 'bench', 'bench-' || :client_id || '-' || :n, '', '');"
+    for ((i = 1; i <= n; i++)); do
+      echo "INSERT INTO realworld.tag(name) VALUES ('bench-tag-$i') ON CONFLICT (name) DO UPDATE SET name = EXCLUDED.name RETURNING id;"
+    done
+    for ((i = 1; i <= n; i++)); do
+      echo "INSERT INTO realworld.article_tag(article_id, tag_id) SELECT realworld.article.id, realworld.tag.id FROM realworld.article, realworld.tag WHERE realworld.article.slug = 'bench-' || :client_id || '-' || :n AND realworld.tag.name = 'bench-tag-$i';"
+    done
+    echo "COMMIT;"
+  } >"$file"
+  echo "$file"
+}
+
+# after: the CREATE_ARTICLE_SQL statement of ArticleController
+write_after() {
+  local n=$1 file=$WORK/after-$1.sql
+  cat >"$file" <<SQL
+\\set n random(1, 2000000000)
+WITH
+    tag_ids AS (
+        SELECT array(SELECT id FROM realworld.tag WHERE name = ANY('{$(tags_array "$n")}'::text[])) AS ids
+    ),
+    new_article AS (
+        INSERT INTO realworld.article(id, user_id, title, slug, description, body)
+        VALUES (gen_random_uuid(), '$AUTHOR', 'bench', 'bench-' || :client_id || '-' || :n, '', '')
+        RETURNING *
+    ),
+    new_article_tag AS (
+        INSERT INTO realworld.article_tag(article_id, tag_id)
+        SELECT new_article.id, tag_id
+        FROM new_article, tag_ids, unnest(tag_ids.ids) AS tag_id
+    )
+SELECT jsonb_build_object('slug', new_article.slug, 'tagList', array(
+    SELECT realworld.tag.name FROM realworld.tag, tag_ids
+    WHERE realworld.tag.id = ANY(tag_ids.ids) ORDER BY realworld.tag.name))
+FROM new_article;
+SQL
+  echo "$file"
+}
+
+printf '%-6s %-8s %s\n' tags variant articles/s
+for n in 0 5 20; do
+  for variant in before after; do
+    script=$(write_$variant "$n")
+    tps=$(pgbench $PG -n -c "$CLIENTS" -j "$CLIENTS" -T "$SECONDS_PER_RUN" -f "$script" 2>/dev/null |
+      awk '/^tps/ {print $3; exit}')
+    printf '%-6s %-8s %s\n' "$n" "$variant" "$tps"
+  done
+done
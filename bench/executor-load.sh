@@ -0,0 +1,44 @@
+#!/usr/bin/env bash
+# Throughput and p99 of the article list with platform vs virtual thread
+# request execution, both behind the DB connection bulkhead.
+#
+# Needs wrk, a built jar (mvn package) and a migrated local database.
+#
+#   ./bench/executor-load.sh [connections] [duration]
+set -euo pipefail
+
+CONNECTIONS=${1:-400}
+DURATION=${2:-30s}
+PORT=${PORT:-8080}
+BASE=http://localhost:$PORT/api
+USER=bench-executor-$RANDOM
+
+start_server() {
+  java -Dserver.executor="$1" -p ./target/modules -m avaje.realworld >/dev/null 2>&1 &
+  SERVER=$!
+  until curl -sf "$BASE/tags" >/dev/null; do sleep 0.2; done
+}
+
+stop_server() {
+  kill "$SERVER" && wait "$SERVER" 2>/dev/null || true
+}
+
+token() {
+  curl -sf -H 'Content-Type: application/json' "$BASE/users" \
+    -d "{\"user\":{\"username\":\"$USER\",\"email\":\"$USER@example.com\",\"password\":\"password\"}}" >/dev/null || true
+  curl -sf -H 'Content-Type: application/json' "$BASE/users/login" \
+    -d "{\"user\":{\"email\":\"$USER@example.com\",\"password\":\"password\"}}" |
+    sed -E 's/.*"token":"([^"]+)".*/\1/'
+}
+
+printf '%-10s %-12s %-10s %s\n' executor requests/s p99 503s
+for mode in platform virtual; do
+  start_server "$mode"
+  TOKEN=$(token)
+  out=$(wrk -t4 -c"$CONNECTIONS" -d"$DURATION" --latency -H "Authorization: Token $TOKEN" "$BASE/articles")
+  stop_server
+  rps=$(awk '/^Requests\/sec/ {print $2}' <<<"$out")
+  p99=$(awk '$1 == "99%" {print $2}' <<<"$out")
+  non2xx=$(awk '/Non-2xx/ {print $NF}' <<<"$out")
+  printf '%-10s %-12s %-10s %s\n' "$mode" "$rps" "$p99" "${non2xx:-0}"
+done
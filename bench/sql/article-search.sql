@@ -0,0 +1,70 @@
+-- Full-text article search over 1M articles, GIN index vs sequential scan.
+--
+-- Run against a migrated local database, everything is rolled back at the end.
+-- Seeding computes the tsvector of every row and takes a few minutes:
+--   psql -h localhost -U postgres -f bench/sql/article-search.sql
+
+\timing on
+begin;
+
+insert into realworld.user (id, username, password_hash, email)
+values ('00000000-0000-0000-0000-000000000001', 'bench-author', '\x00', 'bench-author@example.com');
+
+-- titles, descriptions and bodies drawn from a 2000 word vocabulary with a skewed
+-- distribution, so common words match many rows and rare words a handful
+create temporary table vocabulary as
+select g as n, 'word' || g as word
+from generate_series(1, 2000) g;
+
+insert into realworld.article (user_id, slug, title, description, body, created_at)
+select '00000000-0000-0000-0000-000000000001', 'bench-' || g,
+       (select string_agg(word, ' ') from vocabulary
+        where n in (1 + (random() ^ 3 * 1999)::int, 1 + (random() ^ 3 * 1999)::int, 1 + (g % 2000))),
+       (select string_agg(word, ' ') from vocabulary
+        where n in (1 + (random() ^ 2 * 1999)::int, 1 + (random() ^ 2 * 1999)::int,
+                    1 + (random() ^ 2 * 1999)::int, 1 + ((g * 7) % 2000))),
+       (select string_agg(word, ' ') from vocabulary
+        where n % 50 = g % 50 and n < 1 + (random() * 2000)::int),
+       now() - make_interval(secs => g)
+from generate_series(1, 1000000) g;
+
+analyze realworld.article;
+
+-- the search statement of ArticleController, first page, for a rare and a common term
+prepare search(text) as
+with
+    matches as (
+        select realworld.article.id, ts_rank(realworld.article.search, query) as rank
+        from realworld.article, websearch_to_tsquery('english', $1) as query
+        where realworld.article.search @@ query
+    )
+select id, rank
+from matches
+order by rank desc, id desc
+limit 20;
+
+-- with the GIN index
+explain (analyze, buffers) execute search('word1777');
+explain (analyze, buffers) execute search('word3 word5');
+explain (analyze, buffers) execute search('word2');
+
+-- without: sequential scan evaluating @@ against every row
+drop index realworld.article_search_idx;
+deallocate search;
+prepare search(text) as
+with
+    matches as (
+        select realworld.article.id, ts_rank(realworld.article.search, query) as rank
+        from realworld.article, websearch_to_tsquery('english', $1) as query
+        where realworld.article.search @@ query
+    )
+select id, rank
+from matches
+order by rank desc, id desc
+limit 20;
+
+explain (analyze, buffers) execute search('word1777');
+explain (analyze, buffers) execute search('word3 word5');
+explain (analyze, buffers) execute search('word2');
+
+rollback;
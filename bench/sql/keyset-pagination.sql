@@ -0,0 +1,39 @@
+-- Page 1000 (20 per page) of the global article list, OFFSET vs keyset cursor.
+--
+-- Run against a migrated local database, everything is rolled back at the end:
+--   psql -h localhost -U postgres -f bench/sql/keyset-pagination.sql
+
+\timing on
+begin;
+
+insert into realworld.user (id, username, password_hash, email)
+values ('00000000-0000-0000-0000-000000000001', 'bench-author', '\x00', 'bench-author@example.com');
+
+insert into realworld.article (user_id, slug, title, created_at)
+select '00000000-0000-0000-0000-000000000001', 'bench-' || g, 'bench ' || g,
+       now() - make_interval(secs => g)
+from generate_series(1, 200000) g;
+
+analyze realworld.article;
+
+-- before: OFFSET walks and discards 19980 rows
+explain (analyze, buffers)
+select id
+from realworld.article
+order by created_at desc, id desc
+limit 20 offset 19980;
+
+-- after: seek to the (created_at, id) of the last row of page 999
+select created_at as last_created_at, id as last_id
+from realworld.article
+order by created_at desc, id desc
+limit 1 offset 19979 \gset
+
+explain (analyze, buffers)
+select id
+from realworld.article
+where (created_at, id) < (:'last_created_at', :'last_id')
+order by created_at desc, id desc
+limit 20;
+
+rollback;
@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# Time to first request of the packaged server, started cold and with the AOT
+# cache of aot/train.sh: milliseconds from launching java until GET /api/tags
+# and then an article list are answered, median of several starts.
+#
+# Needs curl, a built jar and AOT cache (mvn -Paot verify) made with the same
+# java, and a migrated local database. Both variants run with the current
+# JAVA_TOOL_OPTIONS, which should be those the cache was trained with. The aot
+# variant runs with -XX:AOTMode=on, so a cache the JVM can't map fails the run
+# rather than being timed as a cold start. JAVA and MODULES select the runtime,
+# e.g. the jlinked one of the image with its /modules. The table printed is
+# the one in the README.
+#
+#   ./bench/startup.sh [runs] [cache]
+#   JAVA=/jre/bin/java MODULES=/modules ./bench/startup.sh 10 /aot/app.aot
+set -euo pipefail
+
+RUNS=${1:-5}
+CACHE=${2:-./target/aot/app.aot}
+JAVA=${JAVA:-java}
+MODULES=${MODULES:-./target/modules}
+PORT=${PORT:-8080}
+BASE=http://localhost:$PORT/api
+
+now_ms() {
+  echo $(($(date +%s%N) / 1000000))
+}
+
+# prints the milliseconds to the first tags response and to the first article list
+first_request() {
+  local start tags
+  start=$(now_ms)
+  "$JAVA" "$@" -p "$MODULES" -m avaje.realworld >/dev/null 2>&1 &
+  local server=$!
+  until curl -sf "$BASE/tags" >/dev/null; do
+    kill -0 "$server" 2>/dev/null || { echo "server exited, run with $*" >&2; exit 1; }
+    sleep 0.01
+  done
+  tags=$(($(now_ms) - start))
+  curl -sf "$BASE/articles?limit=20" >/dev/null || true
+  echo "$tags $(($(now_ms) - start))"
+  kill "$server" && wait "$server" 2>/dev/null || true
+}
+
+median() {
+  sort -n | awk '{v[NR] = $1} END {print v[int((NR + 1) / 2)]}'
+}
+
+echo "| variant | first tags ms | first list ms |"
+echo "|---------|--------------|---------------|"
+for variant in cold aot; do
+  args=()
+  [ "$variant" = aot ] && args=(-XX:AOTCache="$CACHE" -XX:AOTMode=on)
+  results=$(for _ in $(seq 1 "$RUNS"); do first_request "${args[@]}" || exit 1; done)
+  printf '| %-7s | %12s | %13s |\n' "$variant" \
+    "$(cut -d' ' -f1 <<<"$results" | median)" "$(cut -d' ' -f2 <<<"$results" | median)"
+done
@@ -0,0 +1,154 @@
+#!/usr/bin/env bash
+# Statements per second and latency of a signed in article list page of 100
+# rows: the previous statement with favorited and following as correlated
+# exists subqueries per row, against the page statement of ArticlePages plus
+# its single favorite = ANY lookup (following is answered by FollowGraph).
+#
+# Needs pgbench and a migrated local database (see README.md). Benchmark rows
+# are created under dedicated users that are deleted again at the end. When
+# pg_stat_statements is installed the mean execution time of each statement is
+# printed as well. When the postgres processes run on this host (natively or in
+# a docker container on Linux) their CPU time per page is measured over the
+# middle of each run, from /proc.
+#
+#   ./bench/viewer-state.sh [clients] [seconds]
+set -euo pipefail
+
+CLIENTS=${1:-64}
+SECONDS_PER_RUN=${2:-20}
+PG="-h ${PGHOST:-localhost} -U ${PGUSER:-postgres} ${PGDATABASE:-postgres}"
+VIEWER=00000000-0000-0000-0000-00000000b022
+AUTHORS=20
+WORK=$(mktemp -d)
+trap 'psql $PG -q -c "delete from realworld.user where username like '"'bench-viewer-state-%'"'" >/dev/null; rm -rf $WORK' EXIT
+
+# 20 authors with 50 articles each, the viewer follows half of the authors
+# and favorites every third article
+psql $PG -q <<SQL
+insert into realworld.user (id, username, password_hash, email)
+values ('$VIEWER', 'bench-viewer-state-viewer', '\x00', 'bench-viewer-state-viewer@example.com')
+on conflict do nothing;
+insert into realworld.user (username, password_hash, email)
+select 'bench-viewer-state-' || g, '\x00', 'bench-viewer-state-' || g || '@example.com'
+from generate_series(1, $AUTHORS) g
+on conflict do nothing;
+insert into realworld.article (user_id, title, slug, description, body)
+select realworld.user.id, 'bench', 'bench-viewer-state-' || realworld.user.username || '-' || g, '', ''
+from realworld.user, generate_series(1, 50) g
+where realworld.user.username like 'bench-viewer-state-%' and realworld.user.id <> '$VIEWER';
+insert into realworld.follow (from_user_id, to_user_id)
+select '$VIEWER', id from realworld.user
+where username like 'bench-viewer-state-%' and id <> '$VIEWER' and random() < 0.5;
+insert into realworld.favorite (user_id, article_id)
+select '$VIEWER', id from realworld.article
+where slug like 'bench-viewer-state-%' and random() < 0.33;
+SQL
+
+# the ids of the newest page, as the application holds them after reading it
+PAGE_IDS=$(psql $PG -At -c "
+  select string_agg(id::text, ',') from (
+    select realworld.article.id from realworld.article
+    order by realworld.article.created_at desc, realworld.article.id desc limit 100) page")
+
+cat >"$WORK/before.sql" <<SQL
+SELECT jsonb_build_object(
+    'slug', realworld.article.slug,
+    'tagList', array(
+        SELECT realworld.tag.name
+        FROM realworld.article_tag
+        LEFT JOIN realworld.tag ON realworld.tag.id = realworld.article_tag.tag_id
+        WHERE realworld.article_tag.article_id = realworld.article.id
+        ORDER BY realworld.tag.name
+    ),
+    'favorited', exists(
+        SELECT id FROM realworld.favorite
+        WHERE article_id = realworld.article.id AND user_id = '$VIEWER'
+    ),
+    'author', (
+        SELECT jsonb_build_object(
+            'username', realworld.user.username,
+            'following', exists(
+                SELECT id FROM realworld.follow
+                WHERE from_user_id = '$VIEWER' AND to_user_id = realworld.user.id
+            )
+        )
+        FROM realworld.user
+        WHERE realworld.user.id = realworld.article.user_id
+    )
+)
+FROM realworld.article
+ORDER BY realworld.article.created_at DESC, realworld.article.id DESC
+LIMIT 100;
+SQL
+
+cat >"$WORK/after.sql" <<SQL
+SELECT jsonb_build_object(
+    'slug', realworld.article.slug,
+    'tagList', array(
+        SELECT realworld.tag.name
+        FROM realworld.article_tag
+        LEFT JOIN realworld.tag ON realworld.tag.id = realworld.article_tag.tag_id
+        WHERE realworld.article_tag.article_id = realworld.article.id
+        ORDER BY realworld.tag.name
+    )
+),
+(
+    SELECT jsonb_build_object('username', realworld.user.username)
+    FROM realworld.user
+    WHERE realworld.user.id = realworld.article.user_id
+),
+realworld.article.id,
+realworld.article.user_id
+FROM realworld.article
+ORDER BY realworld.article.created_at DESC, realworld.article.id DESC
+LIMIT 100;
+SELECT article_id
+FROM realworld.favorite
+WHERE user_id = '$VIEWER' AND article_id = ANY('{$PAGE_IDS}'::uuid[]);
+SQL
+
+TICKS=$(getconf CLK_TCK)
+
+# user and system ticks of all postgres processes, the pgbench backends included
+pg_ticks() {
+  local total=0 pid
+  for pid in $(pgrep -x postgres || true); do
+    total=$((total + $(awk '{print $14 + $15}' "/proc/$pid/stat" 2>/dev/null || echo 0)))
+  done
+  echo "$total"
+}
+
+STATEMENTS=$(psql $PG -At -c "select count(*) from pg_extension where extname = 'pg_stat_statements'")
+
+printf '%-8s %-10s %-12s %-12s %-14s %s\n' \
+  variant pages/s latency_ms stddev_ms pg_cpu_ms/page exec_ms
+for variant in before after; do
+  [ "$STATEMENTS" = 1 ] && psql $PG -q -c "select pg_stat_statements_reset()" >/dev/null
+  pgbench $PG -n -c "$CLIENTS" -j "$CLIENTS" -T "$SECONDS_PER_RUN" -f "$WORK/$variant.sql" \
+    >"$WORK/$variant.out" 2>/dev/null &
+  BENCH=$!
+  # sampled inside the run, the backends exit with pgbench
+  sleep 1
+  before_ticks=$(pg_ticks)
+  sleep $((SECONDS_PER_RUN - 2))
+  after_ticks=$(pg_ticks)
+  wait "$BENCH"
+  out=$(cat "$WORK/$variant.out")
+  tps=$(awk '/^tps/ {print $3; exit}' <<<"$out")
+  latency=$(awk '/^latency average/ {print $4; exit}' <<<"$out")
+  stddev=$(awk '/^latency stddev/ {print $4; exit}' <<<"$out")
+  cpu="-"
+  if [ "$after_ticks" -gt 0 ]; then
+    cpu=$(awk -v t="$((after_ticks - before_ticks))" -v hz="$TICKS" -v tps="$tps" \
+      -v s="$((SECONDS_PER_RUN - 2))" 'BEGIN {printf "%.3f", t / hz * 1000 / (tps * s)}')
+  fi
+  exec="-"
+  if [ "$STATEMENTS" = 1 ]; then
+    # summed mean execution time of the statements making up one page
+    exec=$(psql $PG -At -c "
+      select round(sum(mean_exec_time)::numeric, 3) from pg_stat_statements
+      where query like '%realworld.%' and query not like '%pg_stat_statements%'")
+  fi
+  printf '%-8s %-10s %-12s %-12s %-14s %s\n' \
+    "$variant" "$tps" "$latency" "${stddev:--}" "$cpu" "$exec"
+done
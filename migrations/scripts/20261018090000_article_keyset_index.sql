@@ -0,0 +1,7 @@
+-- // Article keyset pagination indexes.
+create index article_created_at_id_idx on realworld.article using btree(created_at desc, id desc);
+create index article_user_id_created_at_id_idx on realworld.article using btree(user_id, created_at desc, id desc);
+
+-- //@UNDO
+drop index realworld.article_user_id_created_at_id_idx;
+drop index realworld.article_created_at_id_idx;
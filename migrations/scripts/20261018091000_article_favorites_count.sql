@@ -0,0 +1,29 @@
+-- // Denormalized article favorites count.
+alter table realworld.article add column favorites_count integer not null default 0;
+
+update realworld.article
+set favorites_count = counted.favorites_count
+from (
+    select article_id, count(id) as favorites_count
+    from realworld.favorite
+    group by article_id
+) counted
+where counted.article_id = realworld.article.id;
+
+-- favorites_count changes are not edits of the article, keep updated_at for content columns
+drop trigger set_realworld_article_updated_at on realworld.article;
+
+CREATE TRIGGER set_realworld_article_updated_at
+    BEFORE UPDATE OF user_id, slug, title, description, body ON realworld.article
+    FOR EACH ROW
+    EXECUTE PROCEDURE realworld.set_current_timestamp_updated_at();
+
+-- //@UNDO
+drop trigger set_realworld_article_updated_at on realworld.article;
+
+CREATE TRIGGER set_realworld_article_updated_at
+    BEFORE UPDATE ON realworld.article
+    FOR EACH ROW
+    EXECUTE PROCEDURE realworld.set_current_timestamp_updated_at();
+
+alter table realworld.article drop column favorites_count;
@@ -0,0 +1,26 @@
+-- // Materialized feed timeline, fanned out on write.
+create table realworld.feed_entry (
+    user_id uuid not null references realworld.user(id)
+        ON UPDATE CASCADE
+        ON DELETE CASCADE,
+    created_at timestamptz not null,
+    article_id uuid not null references realworld.article(id)
+        ON UPDATE CASCADE
+        ON DELETE CASCADE,
+    primary key (user_id, created_at, article_id)
+);
+
+-- article deletes cascade through this index
+create index on realworld.feed_entry using btree(article_id);
+
+-- batched fan-out walks the followers of one author in id order
+create index follow_to_user_id_from_user_id_idx on realworld.follow using btree(to_user_id, from_user_id);
+
+insert into realworld.feed_entry(user_id, created_at, article_id)
+select realworld.follow.from_user_id, realworld.article.created_at, realworld.article.id
+from realworld.follow
+join realworld.article on realworld.article.user_id = realworld.follow.to_user_id;
+
+-- //@UNDO
+drop index realworld.follow_to_user_id_from_user_id_idx;
+drop table realworld.feed_entry;
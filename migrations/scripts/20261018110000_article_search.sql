@@ -0,0 +1,12 @@
+-- // Full-text article search.
+alter table realworld.article add column search tsvector generated always as (
+    setweight(to_tsvector('english', title), 'A') ||
+    setweight(to_tsvector('english', description), 'B') ||
+    setweight(to_tsvector('english', body), 'C')
+) stored;
+
+create index article_search_idx on realworld.article using gin(search);
+
+-- //@UNDO
+drop index realworld.article_search_idx;
+alter table realworld.article drop column search;
@@ -0,0 +1,17 @@
+-- // Comment keyset pagination index and denormalized article comments count.
+create index comment_article_id_created_at_id_idx on realworld.comment using btree(article_id, created_at, id);
+
+alter table realworld.article add column comments_count integer not null default 0;
+
+update realworld.article
+set comments_count = counted.comments_count
+from (
+    select article_id, count(id) as comments_count
+    from realworld.comment
+    group by article_id
+) counted
+where counted.article_id = realworld.article.id;
+
+-- //@UNDO
+alter table realworld.article drop column comments_count;
+drop index realworld.comment_article_id_created_at_id_idx;
@@ -0,0 +1,11 @@
+-- // Background feed fan-outs not finished yet, resumed after a restart.
+create table realworld.feed_fanout_pending (
+    article_id uuid primary key references realworld.article(id)
+        ON UPDATE CASCADE
+        ON DELETE CASCADE,
+    -- the last follower id fanned out to, batches resume after it
+    after_user_id uuid not null default '00000000-0000-0000-0000-000000000000'
+);
+
+-- //@UNDO
+drop table realworld.feed_fanout_pending;
@@ -0,0 +1,34 @@
+-- // Log of follow inserts and deletes, polled by every instance to refresh its follow graph.
+create table realworld.follow_change (
+    changed_at timestamptz not null default statement_timestamp(),
+    -- no foreign keys, the unfollows of deleted users stay as tombstones
+    from_user_id uuid not null,
+    to_user_id uuid not null
+);
+
+create index follow_change_changed_at_idx on realworld.follow_change using btree(changed_at);
+
+CREATE FUNCTION realworld.log_follow_change()
+    RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP = 'DELETE' THEN
+    INSERT INTO realworld.follow_change(from_user_id, to_user_id)
+    VALUES (OLD.from_user_id, OLD.to_user_id);
+  ELSE
+    INSERT INTO realworld.follow_change(from_user_id, to_user_id)
+    VALUES (NEW.from_user_id, NEW.to_user_id);
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- also fires for the follows cascaded by a user delete
+CREATE TRIGGER log_realworld_follow_change
+    AFTER INSERT OR DELETE ON realworld.follow
+    FOR EACH ROW
+EXECUTE PROCEDURE realworld.log_follow_change();
+
+-- //@UNDO
+DROP TRIGGER log_realworld_follow_change ON realworld.follow;
+DROP FUNCTION realworld.log_follow_change();
+drop table realworld.follow_change;
@@ -0,0 +1,60 @@
+package com.avaje.jdk.realworld.security;
+
+import com.avaje.jdk.realworld.web.service.TokenService;
+import io.avaje.jex.http.Context;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Authorization header parsing in front of the token lookup, which is stubbed out. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JWTAuthFilterBenchmark {
+
+  private static final UUID USER_ID = UUID.randomUUID();
+
+  private JWTAuthFilter filter;
+  private Context ctx;
+
+  @Setup
+  public void setup() {
+    var header = "Token " + new TokenService().getJWT(USER_ID);
+    filter =
+        new JWTAuthFilter(
+            new TokenService() {
+              @Override
+              public UUID authenticateToken(String token) {
+                return USER_ID;
+              }
+            });
+    // a proxy rather than a mock keeps the stub's dispatch cost out of the measurement
+    ctx =
+        (Context)
+            Proxy.newProxyInstance(
+                Context.class.getClassLoader(),
+                new Class<?>[] {Context.class},
+                (proxy, method, args) ->
+                    args != null && args.length == 1 && method.getName().equals("header")
+                        ? header
+                        : null);
+  }
+
+  @Benchmark
+  public UUID getUserId() {
+    return filter.getUserId(ctx);
+  }
+}
@@ -0,0 +1,63 @@
+package com.avaje.jdk.realworld.web;
+
+import dev.mccue.jdbc.SQLFragment;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Slug generation and the statement assembly done by the article list and feed handlers. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArticleBenchmark {
+
+  private final ArticleController controller =
+      new ArticleController(null, null, null, null, null, null, null, null);
+  private final ArticleListQueries listQueries = new ArticleListQueries(null);
+  private final UUID userId = UUID.randomUUID();
+  private final UUID tagId = UUID.randomUUID();
+  private final UUID authorId = UUID.randomUUID();
+  private final ArticleCursor cursor = new ArticleCursor(Instant.now(), UUID.randomUUID());
+
+  @Benchmark
+  public String articleSlug() {
+    return controller.articleSlug("How to Train Your Dragon, Part 2: Übung macht den Meister");
+  }
+
+  @Benchmark
+  public void listStatement(Blackhole bh) {
+    var variant = ArticleListQueries.variant(true, false, true);
+    bh.consume(listQueries.sql(variant, false));
+    bh.consume(ArticleListQueries.parameters(tagId, null, authorId, null, 20, 40));
+  }
+
+  @Benchmark
+  public void listStatementKeyset(Blackhole bh) {
+    var variant = ArticleListQueries.variant(false, false, false);
+    bh.consume(listQueries.sql(variant, true));
+    bh.consume(ArticleListQueries.parameters(null, null, null, cursor, 20, 0));
+  }
+
+  @Benchmark
+  public SQLFragment feedStatement() {
+    return ArticleController.feedQuery(userId, null, 20, 40);
+  }
+
+  @Benchmark
+  public SQLFragment feedStatementKeyset() {
+    return ArticleController.feedQuery(userId, cursor, 20, 0);
+  }
+}
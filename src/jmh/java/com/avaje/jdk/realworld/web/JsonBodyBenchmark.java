@@ -0,0 +1,112 @@
+package com.avaje.jdk.realworld.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.ebean.DB;
+import io.ebean.SqlQuery;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A page of the comments handler read from the database and written to a discarding stream, the
+ * driver's bytes streamed by {@link JsonBody#array} vs each row decoded to a String and encoded
+ * again. {@code gc.alloc.rate.norm} is the heap allocated per page including pgjdbc's, so the
+ * difference between the two is what the byte path saves.
+ *
+ * <p>Needs the database of application.properties with the migrations applied. A user, an article
+ * and {@code COMMENTS} comments are committed on setup and deleted on teardown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class JsonBodyBenchmark {
+
+  private static final int COMMENTS = 1_000;
+
+  private static final String SEED_SQL =
+      """
+      WITH
+          bench_user AS (
+              INSERT INTO realworld.user(id, username, password_hash, email)
+              VALUES (?, ?, '\\x00', ? || '@example.com')
+              RETURNING id
+          ),
+          bench_article AS (
+              INSERT INTO realworld.article(id, user_id, slug, title, description, body)
+              SELECT ?, id, ?, 'json body', 'json body', 'json body'
+              FROM bench_user
+              RETURNING id, user_id
+          )
+      INSERT INTO realworld.comment(id, article_id, user_id, body, created_at)
+      SELECT gen_random_uuid(), bench_article.id, bench_article.user_id,
+             repeat('Très bien. ', 25), now() - g * interval '1 second'
+      FROM bench_article, generate_series(1, ?) g
+      """;
+
+  @Param({"20", "100"})
+  public int limit;
+
+  private final UUID userId = UUID.randomUUID();
+  private final UUID articleId = UUID.randomUUID();
+  private final OutputStream sink = OutputStream.nullOutputStream();
+
+  @Setup
+  public void setup() {
+    var name = "json-body-" + userId;
+    DB.sqlUpdate(SEED_SQL).setParameters(userId, name, name, articleId, name, COMMENTS).execute();
+  }
+
+  @TearDown
+  public void tearDown() {
+    DB.sqlUpdate("DELETE FROM realworld.user WHERE id = ?").setParameter(userId).execute();
+  }
+
+  private SqlQuery page() {
+    return DB.sqlQuery(ArticleController.COMMENTS_FIRST_PAGE_SQL)
+        .setArrayParameter(1, List.of())
+        .setParameter(2, articleId)
+        .setParameter(3, limit);
+  }
+
+  /** {@link JsonBody#array}: each row written as the bytes the driver received. */
+  @Benchmark
+  public void rowBytes() throws IOException {
+    JsonBody.array(sink, "comments", page(), (rs, row) -> {}, () -> "");
+  }
+
+  /** The previous path: each row decoded to a String, the document encoded again by Jex. */
+  @Benchmark
+  public void decodedString() throws IOException {
+    var json = new StringBuilder("{\"comments\": [");
+    var first = new boolean[] {true};
+    page()
+        .setBufferFetchSizeHint(100)
+        .findEachRow(
+            (rs, row) -> {
+              if (!first[0]) {
+                json.append(',');
+              }
+              first[0] = false;
+              json.append(rs.getString(1));
+            });
+    sink.write(json.append("]}").toString().getBytes(UTF_8));
+  }
+}
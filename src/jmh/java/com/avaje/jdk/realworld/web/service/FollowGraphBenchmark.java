@@ -0,0 +1,82 @@
+package com.avaje.jdk.realworld.web.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FollowGraph} lookups over 10M edges, 1M users following 10 random users each. The setup
+ * prints the graph's estimated footprint and the heap retained by building it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FollowGraphBenchmark {
+
+  private static final int USERS = 1_000_000;
+  private static final int FOLLOWEES = 10;
+  private static final int PAGE = 20;
+
+  private UUID[] users;
+  private FollowGraph.Graph graph;
+  private List<UUID> page;
+  private int next;
+
+  @Setup
+  public void setup() {
+    var random = new Random(42);
+    users = new UUID[USERS];
+    for (int i = 0; i < USERS; i++) {
+      users[i] = new UUID(random.nextLong(), random.nextLong());
+    }
+    var heap = ManagementFactory.getMemoryMXBean();
+    System.gc();
+    var before = heap.getHeapMemoryUsage().getUsed();
+
+    var builder = new FollowGraph.Builder();
+    for (var user : users) {
+      for (int i = 0; i < FOLLOWEES; i++) {
+        builder.add(user, users[random.nextInt(USERS)]);
+      }
+    }
+    graph = builder.build();
+    System.gc();
+    var retained = heap.getHeapMemoryUsage().getUsed() - before;
+
+    System.out.printf(
+        "%n%d users, %d edges, estimated %d MB, retained %d MB%n",
+        graph.users(), graph.edges(), graph.bytes() >> 20, retained >> 20);
+    page = List.of(users).subList(0, PAGE);
+  }
+
+  private UUID user() {
+    next = (next + 7919) % USERS;
+    return users[next];
+  }
+
+  @Benchmark
+  public boolean following() {
+    return graph.following(user(), user());
+  }
+
+  /** The following flags of a page of 20 authors. */
+  @Benchmark
+  public List<UUID> followedPage() {
+    return graph.followed(user(), page);
+  }
+}
@@ -0,0 +1,52 @@
+package com.avaje.jdk.realworld.web.service;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Token signing, verification and the verified token cache lookup. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenServiceBenchmark {
+
+  private final TokenService tokenService = new TokenService();
+  private final TokenCache cache = new TokenCache(10_000, 60);
+  private final UUID userId = UUID.randomUUID();
+  private String token;
+
+  @Setup
+  public void setup() {
+    token = tokenService.getJWT(userId);
+    cache.put(TokenCache.digest(token), userId, Instant.now().plusSeconds(3600), 0);
+  }
+
+  @Benchmark
+  public String getJWT() {
+    return tokenService.getJWT(userId);
+  }
+
+  @Benchmark
+  public DecodedJWT verify() {
+    return tokenService.verify(token);
+  }
+
+  @Benchmark
+  public UUID cachedToken() {
+    return cache.get(TokenCache.digest(token));
+  }
+}
@@ -0,0 +1,83 @@
+package com.avaje.jdk.realworld.loadtest;
+
+import io.avaje.jsonb.JsonType;
+import io.avaje.jsonb.Jsonb;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/** Sends the collection's requests and records each under its route. */
+final class Conduit {
+
+  private static final JsonType<Object> JSON = Jsonb.builder().build().type(Object.class);
+
+  private final String baseUrl;
+  private final PostmanCollection collection;
+  private final HttpClient client =
+      HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .connectTimeout(Duration.ofSeconds(5))
+          .executor(Executors.newVirtualThreadPerTaskExecutor())
+          .build();
+  private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+
+  Conduit(String baseUrl, PostmanCollection collection) {
+    this.baseUrl = baseUrl;
+    this.collection = collection;
+  }
+
+  /** Response of a request, status -1 when it failed without one. */
+  record Response(int status, String body) {
+
+    boolean ok() {
+      return status >= 200 && status < 300;
+    }
+
+    /** Field of the response object, e.g. {@code json("article", "slug")}. */
+    @SuppressWarnings("unchecked")
+    String json(String... path) {
+      Object node = JSON.fromJson(body);
+      for (var key : path) {
+        node = ((Map<String, Object>) node).get(key);
+      }
+      return node == null ? null : node.toString();
+    }
+  }
+
+  Response send(String name, Map<String, String> vars) {
+    return send(name, vars, Map.of());
+  }
+
+  Response send(String name, Map<String, String> vars, Map<String, String> query) {
+    var template = collection.template(name);
+    var stats = routes.computeIfAbsent(template.route(), r -> new RouteStats());
+    var request = PostmanCollection.request(baseUrl, template, vars, query);
+    var start = System.nanoTime();
+    try {
+      var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+      stats.record((System.nanoTime() - start) / 1000, response.statusCode());
+      return new Response(response.statusCode(), response.body());
+    } catch (IOException e) {
+      stats.failed();
+      return new Response(-1, "");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new Response(-1, "");
+    }
+  }
+
+  /** Stats of each route, removing them so the next scenario starts from zero. */
+  Map<String, RouteStats> drain() {
+    var drained = Map.copyOf(routes);
+    routes.clear();
+    return drained;
+  }
+
+  void reset() {
+    routes.values().forEach(RouteStats::reset);
+  }
+}
@@ -0,0 +1,177 @@
+package com.avaje.jdk.realworld.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+
+/**
+ * Replays RealWorld traffic mixes built from Conduit.postman_collection.json against a local
+ * server and writes a JSON report of per route throughput and HDR latency percentiles.
+ *
+ * <pre>
+ * mvn -Pload-test verify
+ * mvn -Pload-test verify -Dloadtest.args="--scenarios comment-storm --concurrency 256"
+ * mvn -Pload-test verify -Dloadtest.args="compare baseline.json target/load-test/report.json"
+ * </pre>
+ *
+ * <p>Without {@code --url} the packaged server in target/modules is started and stopped around the
+ * run, it needs the local postgres with the migrations applied. Workers are closed loop, each sends
+ * its next request when the previous one completes.
+ */
+public final class LoadTest {
+
+  record Options(
+      String url,
+      Path collection,
+      List<Scenario> scenarios,
+      int concurrency,
+      Duration warmup,
+      Duration duration,
+      int authors,
+      int articles,
+      int readers,
+      int follows,
+      long seed,
+      String label,
+      Path report) {
+
+    static Options parse(String[] args) {
+      String url = null;
+      var collection = Path.of("Conduit.postman_collection.json");
+      var scenarios = List.of(Scenario.values());
+      int concurrency = 64;
+      var warmup = Duration.ofSeconds(10);
+      var duration = Duration.ofSeconds(60);
+      int authors = 20, articles = 5, readers = 200, follows = 5;
+      long seed = 42;
+      String label = System.getenv().getOrDefault("GIT_COMMIT", "local");
+      var report = Path.of("target/load-test/report.json");
+
+      for (int i = 0; i < args.length; i++) {
+        var value = i + 1 < args.length ? args[i + 1] : null;
+        switch (args[i++]) {
+          case "--url" -> url = value;
+          case "--collection" -> collection = Path.of(value);
+          case "--scenarios" ->
+              scenarios = Arrays.stream(value.split(",")).map(Scenario::of).toList();
+          case "--concurrency" -> concurrency = Integer.parseInt(value);
+          case "--warmup" -> warmup = Duration.ofSeconds(Long.parseLong(value));
+          case "--duration" -> duration = Duration.ofSeconds(Long.parseLong(value));
+          case "--authors" -> authors = Integer.parseInt(value);
+          case "--articles" -> articles = Integer.parseInt(value);
+          case "--readers" -> readers = Integer.parseInt(value);
+          case "--follows" -> follows = Integer.parseInt(value);
+          case "--seed" -> seed = Long.parseLong(value);
+          case "--label" -> label = value;
+          case "--report" -> report = Path.of(value);
+          default -> throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+        }
+      }
+      return new Options(
+          url, collection, scenarios, concurrency, warmup, duration, authors, articles, readers,
+          follows, seed, label, report);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("compare")) {
+      var tolerance =
+          args.length > 4 && args[3].equals("--tolerance") ? Double.parseDouble(args[4]) : 10;
+      System.exit(Report.compare(Path.of(args[1]), Path.of(args[2]), tolerance) ? 0 : 1);
+    }
+
+    var options = Options.parse(args);
+    Process server = null;
+    var url = options.url();
+    if (url == null) {
+      url = "http://localhost:8080/api";
+      server = startServer(url, options.report().resolveSibling("server.log"));
+    }
+    try {
+      run(url, options);
+    } finally {
+      if (server != null) {
+        server.destroy();
+        server.waitFor();
+      }
+    }
+  }
+
+  private static void run(String url, Options options) throws Exception {
+    var conduit = new Conduit(url, new PostmanCollection(options.collection()));
+    var world = World.seed(conduit, options);
+    conduit.drain();
+
+    var report = new Report(options, Instant.now());
+    for (var scenario : options.scenarios()) {
+      System.out.printf(
+          "%s: %d workers, %ss warmup, %ss measured%n",
+          scenario.id,
+          options.concurrency(),
+          options.warmup().toSeconds(),
+          options.duration().toSeconds());
+
+      var measureFrom = System.nanoTime() + options.warmup().toNanos();
+      var end = measureFrom + options.duration().toNanos();
+      var root = new SplittableRandom(options.seed());
+      try (var workers = Executors.newVirtualThreadPerTaskExecutor()) {
+        for (int i = 0; i < options.concurrency(); i++) {
+          var session =
+              new Scenario.Session(i, world.readers.get(i % world.readers.size()), root.split());
+          workers.submit(
+              () -> {
+                while (System.nanoTime() < end) {
+                  scenario.step(conduit, world, session);
+                }
+              });
+        }
+        Thread.sleep(options.warmup());
+        conduit.reset();
+      }
+      report.add(scenario, conduit.drain(), options.duration());
+    }
+    report.write(options.report());
+    report.print();
+  }
+
+  private static Process startServer(String url, Path log)
+      throws IOException, InterruptedException {
+    Files.createDirectories(log.getParent());
+    var server =
+        new ProcessBuilder("java", "-p", "target/modules", "-m", "avaje.realworld")
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+    var client = HttpClient.newHttpClient();
+    var ready = HttpRequest.newBuilder(URI.create(url + "/tags")).build();
+    var deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+    while (System.nanoTime() < deadline) {
+      if (!server.isAlive()) {
+        throw new IllegalStateException("Server exited, see " + log);
+      }
+      try {
+        if (client.send(ready, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+          return server;
+        }
+      } catch (IOException e) {
+        // not listening yet
+      }
+      Thread.sleep(200);
+    }
+    server.destroy();
+    throw new IllegalStateException("Server not ready after 60s, see " + log);
+  }
+
+  private LoadTest() {}
+}
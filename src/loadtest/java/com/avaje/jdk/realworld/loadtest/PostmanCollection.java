@@ -0,0 +1,142 @@
+package com.avaje.jdk.realworld.loadtest;
+
+import io.avaje.jsonb.Jsonb;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The request shapes of Conduit.postman_collection.json, keyed by {@code "<folder>/<name>"} such
+ * as {@code "Articles/Create Article"}, so the load test sends the same requests as the API tests.
+ */
+final class PostmanCollection {
+
+  private static final Pattern VARIABLE = Pattern.compile("\\{\\{(\\w+)}}");
+
+  private final Map<String, Template> templates = new LinkedHashMap<>();
+
+  /**
+   * One request of the collection.
+   *
+   * @param route the method and path template used to group latencies, e.g. {@code GET
+   *     /articles/{slug}}
+   */
+  record Template(
+      String route,
+      String method,
+      List<String> path,
+      Map<String, String> query,
+      Map<String, String> headers,
+      String body) {}
+
+  @SuppressWarnings("unchecked")
+  PostmanCollection(Path file) throws IOException {
+    var json =
+        (Map<String, Object>)
+            Jsonb.builder().build().type(Object.class).fromJson(Files.readString(file));
+    for (var folder : (List<Map<String, Object>>) json.get("item")) {
+      for (var item : (List<Map<String, Object>>) folder.get("item")) {
+        var name = folder.get("name") + "/" + item.get("name");
+        templates.put(name, template((Map<String, Object>) item.get("request")));
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Template template(Map<String, Object> request) {
+    var method = (String) request.get("method");
+    var url = (Map<String, Object>) request.get("url");
+    var path = (List<String>) url.get("path");
+
+    var query = new LinkedHashMap<String, String>();
+    for (var param : (List<Map<String, String>>) url.getOrDefault("query", List.of())) {
+      query.put(param.get("key"), param.get("value"));
+    }
+    var headers = new LinkedHashMap<String, String>();
+    for (var header : (List<Map<String, String>>) request.getOrDefault("header", List.of())) {
+      headers.put(header.get("key"), header.get("value"));
+    }
+    var body = (Map<String, Object>) request.get("body");
+    var raw = body == null ? null : (String) body.get("raw");
+
+    var route = new StringBuilder(method).append(' ');
+    for (var segment : path) {
+      // celeb_{{USERNAME}} and {{slug}} both become a single path parameter
+      var matcher = VARIABLE.matcher(segment);
+      route
+          .append('/')
+          .append(matcher.find() ? "{" + matcher.group(1).toLowerCase() + "}" : segment);
+    }
+    if (!query.isEmpty()) {
+      route.append('?').append(String.join("&", query.keySet()));
+    }
+    return new Template(
+        route.toString(), method, path, query, headers, raw == null || raw.isBlank() ? null : raw);
+  }
+
+  Template template(String name) {
+    var template = templates.get(name);
+    if (template == null) {
+      throw new IllegalArgumentException("No request " + name + " in the postman collection");
+    }
+    return template;
+  }
+
+  /**
+   * Build the request, substituting the {{variables}} and replacing the query values of the
+   * collection (such as {@code author=johnjacob}) with the given ones.
+   */
+  static HttpRequest request(
+      String baseUrl, Template template, Map<String, String> vars, Map<String, String> query) {
+    var url = new StringBuilder(baseUrl);
+    for (var segment : template.path()) {
+      url.append('/').append(encode(substitute(segment, vars)));
+    }
+    var separator = '?';
+    for (var param : template.query().entrySet()) {
+      var value = query.getOrDefault(param.getKey(), substitute(param.getValue(), vars));
+      url.append(separator).append(param.getKey()).append('=').append(encode(value));
+      separator = '&';
+    }
+
+    var builder = HttpRequest.newBuilder(URI.create(url.toString()));
+    template
+        .headers()
+        .forEach(
+            (key, value) -> {
+              var header = substitute(value, vars);
+              // anonymous requests drop the Authorization header
+              if (!header.contains("{{")) {
+                builder.header(key, header);
+              }
+            });
+    var body =
+        template.body() == null
+            ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofString(substitute(template.body(), vars));
+    return builder.method(template.method(), body).build();
+  }
+
+  private static String substitute(String text, Map<String, String> vars) {
+    return VARIABLE
+        .matcher(text)
+        .replaceAll(
+            match -> {
+              var value = vars.get(match.group(1));
+              return Matcher.quoteReplacement(value == null ? match.group() : value);
+            });
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+  }
+}
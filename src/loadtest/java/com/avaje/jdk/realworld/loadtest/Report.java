@@ -0,0 +1,191 @@
+package com.avaje.jdk.realworld.loadtest;
+
+import io.avaje.jsonb.JsonType;
+import io.avaje.jsonb.Jsonb;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.HdrHistogram.Histogram;
+
+/**
+ * The machine readable result of a run, one entry per scenario and route with throughput,
+ * statuses, latency percentiles in milliseconds and the compressed HDR histogram, so runs can be
+ * diffed with {@link #compare} or merged with HdrHistogram tooling.
+ */
+final class Report {
+
+  private static final JsonType<Object> JSON = Jsonb.builder().build().type(Object.class);
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+  private final Map<String, Object> root = new LinkedHashMap<>();
+  private final Map<String, Object> scenarios = new LinkedHashMap<>();
+
+  Report(LoadTest.Options options, Instant startedAt) {
+    root.put("version", 1);
+    root.put("label", options.label());
+    root.put("startedAt", startedAt.toString());
+    root.put(
+        "config",
+        new LinkedHashMap<>(Map.of(
+            "concurrency", options.concurrency(),
+            "warmupSeconds", options.warmup().toSeconds(),
+            "durationSeconds", options.duration().toSeconds(),
+            "authors", options.authors(),
+            "articles", options.articles(),
+            "readers", options.readers(),
+            "seed", options.seed())));
+    root.put("scenarios", scenarios);
+  }
+
+  void add(Scenario scenario, Map<String, RouteStats> stats, Duration duration) {
+    var seconds = duration.toNanos() / 1e9;
+    var routes = new TreeMap<String, Object>();
+    long requests = 0;
+    for (var entry : stats.entrySet()) {
+      var histogram = entry.getValue().histogram();
+      var count = histogram.getTotalCount();
+      requests += count;
+
+      var route = new LinkedHashMap<String, Object>();
+      route.put("requests", count);
+      route.put("throughput", round(count / seconds));
+      route.put("failures", entry.getValue().failures());
+      var statuses = new LinkedHashMap<String, Object>();
+      entry.getValue().statuses().forEach((status, n) -> statuses.put(status.toString(), n));
+      route.put("statuses", statuses);
+      var latency = new LinkedHashMap<String, Object>();
+      latency.put("mean", round(histogram.getMean() / 1000));
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        latency.put(PERCENTILE_NAMES[i], millis(histogram.getValueAtPercentile(PERCENTILES[i])));
+      }
+      latency.put("max", millis(histogram.getMaxValue()));
+      route.put("latencyMs", latency);
+      route.put("hdr", encode(histogram));
+      routes.put(entry.getKey(), route);
+    }
+    var result = new LinkedHashMap<String, Object>();
+    result.put("requests", requests);
+    result.put("throughput", round(requests / seconds));
+    result.put("routes", routes);
+    scenarios.put(scenario.id, result);
+  }
+
+  void write(Path file) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Files.writeString(file, JSON.toJsonPretty(root));
+    System.out.println("Report written to " + file);
+  }
+
+  @SuppressWarnings("unchecked")
+  void print() {
+    System.out.printf(
+        "%-20s %-34s %10s %10s %10s %10s%n",
+        "scenario",
+        "route",
+        "req/s",
+        "p50 ms",
+        "p99 ms",
+        "non-2xx");
+    scenarios.forEach(
+        (scenario, result) -> {
+          var routes =
+              (Map<String, Map<String, Object>>) ((Map<String, Object>) result).get("routes");
+          routes.forEach(
+              (route, stats) -> {
+                var latency = (Map<String, Object>) stats.get("latencyMs");
+                System.out.printf(
+                    "%-20s %-34s %10s %10s %10s %10d%n",
+                    scenario,
+                    route,
+                    stats.get("throughput"),
+                    latency.get("p50"),
+                    latency.get("p99"),
+                    errors(stats));
+              });
+        });
+  }
+
+  /**
+   * Print the routes whose throughput dropped, or p99 rose, by more than the tolerance percent and
+   * return false if there are any.
+   */
+  @SuppressWarnings("unchecked")
+  static boolean compare(Path baseline, Path current, double tolerance) throws IOException {
+    var before = (Map<String, Object>) JSON.fromJson(Files.readString(baseline));
+    var after = (Map<String, Object>) JSON.fromJson(Files.readString(current));
+    var beforeScenarios = (Map<String, Map<String, Object>>) before.get("scenarios");
+    var afterScenarios = (Map<String, Map<String, Object>>) after.get("scenarios");
+
+    var ok = true;
+    System.out.printf("%-20s %-34s %16s %16s %s%n", "scenario", "route", "req/s", "p99 ms", "");
+    for (var scenario : afterScenarios.entrySet()) {
+      var baseScenario = beforeScenarios.get(scenario.getKey());
+      if (baseScenario == null) {
+        continue;
+      }
+      var baseRoutes = (Map<String, Map<String, Object>>) baseScenario.get("routes");
+      var routes = (Map<String, Map<String, Object>>) scenario.getValue().get("routes");
+      for (var route : routes.entrySet()) {
+        var base = baseRoutes.get(route.getKey());
+        if (base == null) {
+          continue;
+        }
+        var rps = number(route.getValue().get("throughput"));
+        var baseRps = number(base.get("throughput"));
+        var p99 = number(((Map<String, Object>) route.getValue().get("latencyMs")).get("p99"));
+        var baseP99 = number(((Map<String, Object>) base.get("latencyMs")).get("p99"));
+
+        var slower = rps < baseRps * (1 - tolerance / 100) || p99 > baseP99 * (1 + tolerance / 100);
+        ok &= !slower;
+        System.out.printf(
+            "%-20s %-34s %7.1f->%-7.1f %7.2f->%-7.2f %s%n",
+            scenario.getKey(),
+            route.getKey(),
+            baseRps,
+            rps,
+            baseP99,
+            p99,
+            slower ? "REGRESSION" : "");
+      }
+    }
+    return ok;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static long errors(Map<String, Object> stats) {
+    long errors = ((Number) stats.get("failures")).longValue();
+    for (var status : ((Map<String, Object>) stats.get("statuses")).entrySet()) {
+      if (!status.getKey().startsWith("2")) {
+        errors += ((Number) status.getValue()).longValue();
+      }
+    }
+    return errors;
+  }
+
+  private static double number(Object value) {
+    return ((Number) value).doubleValue();
+  }
+
+  private static double millis(long micros) {
+    return round(micros / 1000.0);
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 100) / 100.0;
+  }
+
+  private static String encode(Histogram histogram) {
+    var buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+    var length = histogram.encodeIntoCompressedByteBuffer(buffer);
+    return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+  }
+}
@@ -0,0 +1,54 @@
+package com.avaje.jdk.realworld.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/** Latencies and response statuses of one route, recorded without locks by the workers. */
+final class RouteStats {
+
+  private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+  private final Recorder recorder = new Recorder(MAX_LATENCY, 3);
+  private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+  private final LongAdder failures = new LongAdder();
+  private final Histogram total = new Histogram(MAX_LATENCY, 3);
+
+  void record(long micros, int status) {
+    recorder.recordValue(Math.min(micros, MAX_LATENCY));
+    statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+  }
+
+  /** The request failed without a response, such as a connect timeout or reset. */
+  void failed() {
+    failures.increment();
+  }
+
+  /** Drop what was recorded during warmup. */
+  void reset() {
+    recorder.reset();
+    statuses.clear();
+    failures.reset();
+    total.reset();
+  }
+
+  /** The histogram of everything recorded since the last reset. */
+  Histogram histogram() {
+    total.add(recorder.getIntervalHistogram());
+    return total;
+  }
+
+  Map<Integer, Long> statuses() {
+    var counts = new TreeMap<Integer, Long>();
+    statuses.forEach((status, count) -> counts.put(status, count.sum()));
+    return counts;
+  }
+
+  long failures() {
+    return failures.sum();
+  }
+}
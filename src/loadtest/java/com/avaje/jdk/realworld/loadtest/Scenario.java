@@ -0,0 +1,137 @@
+package com.avaje.jdk.realworld.loadtest;
+
+import static com.avaje.jdk.realworld.loadtest.World.with;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/** The traffic mixes, each step of a worker picks its next request by weight. */
+enum Scenario {
+
+  /** Read heavy browsing of the global article list, half the readers signed in. */
+  GLOBAL_FEED("global-feed") {
+    @Override
+    void step(Conduit conduit, World world, Session session) {
+      var vars = session.random.nextBoolean() ? session.reader.vars() : Map.<String, String>of();
+      var roll = session.random.nextInt(100);
+      if (roll < 40) {
+        conduit.send("Articles/All Articles", vars);
+      } else if (roll < 55) {
+        conduit.send("Articles/Articles by Tag", vars);
+      } else if (roll < 65) {
+        var author = session.pick(world.celebs).username();
+        conduit.send("Articles/Articles by Author", vars, Map.of("author", author));
+      } else if (roll < 90) {
+        var slug = session.pick(world.slugs);
+        conduit.send("Articles/Single Article by slug", with(session.reader, "slug", slug));
+      } else {
+        conduit.send("Tags/All Tags", Map.of());
+      }
+    }
+  },
+
+  /** Signed in readers reading their feed while following and unfollowing celebs. */
+  PERSONAL_FEED("personal-feed") {
+    @Override
+    void step(Conduit conduit, World world, Session session) {
+      var roll = session.random.nextInt(100);
+      var celeb = session.pick(world.celebs).name();
+      if (roll < 50) {
+        conduit.send("Articles/Feed", session.reader.vars());
+      } else if (roll < 65) {
+        conduit.send("Profiles/Follow Profile", with(session.reader, "USERNAME", celeb));
+      } else if (roll < 80) {
+        conduit.send("Profiles/Unfollow Profile", with(session.reader, "USERNAME", celeb));
+      } else {
+        conduit.send("Profiles/Profile", with(session.reader, "USERNAME", celeb));
+      }
+    }
+  },
+
+  /** Many readers commenting on, and polling the comments of, a handful of hot articles. */
+  COMMENT_STORM("comment-storm") {
+    private static final int HOT_ARTICLES = 5;
+
+    @Override
+    void step(Conduit conduit, World world, Session session) {
+      var roll = session.random.nextInt(100);
+      var slug =
+          world.slugs.get(session.random.nextInt(Math.min(HOT_ARTICLES, world.slugs.size())));
+      var vars = with(session.reader, "slug", slug);
+      if (roll < 45) {
+        var comment = conduit.send("Comments/Create Comment for Article", vars);
+        if (comment.ok()) {
+          session.comments.add(new String[] {slug, comment.json("comment", "id")});
+        }
+      } else if (roll < 90 || session.comments.isEmpty()) {
+        conduit.send("Comments/All Comments for Article", vars);
+      } else {
+        var comment = session.comments.poll();
+        var delete = with(session.reader, "slug", comment[0]);
+        delete.put("commentId", comment[1]);
+        conduit.send("Comments/Delete Comment for Article", delete);
+      }
+    }
+  },
+
+  /** Sign ups: register, log in, read and update the new user. */
+  REGISTRATION_BURST("registration-burst") {
+    @Override
+    void step(Conduit conduit, World world, Session session) {
+      var name = world.run + "_w" + session.id + "_" + session.sequence++;
+      var vars =
+          new HashMap<>(
+              Map.of("USERNAME", name, "EMAIL", name + "@example.com", "PASSWORD", World.PASSWORD));
+      if (!conduit.send("Auth/Register", vars).ok()) {
+        return;
+      }
+      var login = conduit.send("Auth/Login", vars);
+      if (!login.ok()) {
+        return;
+      }
+      vars.put("token", login.json("user", "token"));
+      conduit.send("Auth/Current User", vars);
+      conduit.send("Auth/Update User", vars);
+    }
+  };
+
+  final String id;
+
+  Scenario(String id) {
+    this.id = id;
+  }
+
+  abstract void step(Conduit conduit, World world, Session session);
+
+  static Scenario of(String id) {
+    for (var scenario : values()) {
+      if (scenario.id.equals(id)) {
+        return scenario;
+      }
+    }
+    throw new IllegalArgumentException("Unknown scenario " + id);
+  }
+
+  /** State of one worker. */
+  static final class Session {
+
+    final int id;
+    final World.Member reader;
+    final RandomGenerator random;
+    final ArrayDeque<String[]> comments = new ArrayDeque<>();
+    int sequence;
+
+    Session(int id, World.Member reader, RandomGenerator random) {
+      this.id = id;
+      this.reader = reader;
+      this.random = random;
+    }
+
+    <T> T pick(List<T> from) {
+      return from.get(random.nextInt(from.size()));
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.avaje.jdk.realworld.loadtest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The seeded users and articles the scenarios run against: celebs who write the articles and
+ * readers who follow celebs and favorite their articles.
+ */
+final class World {
+
+  static final String PASSWORD = "load-test-password";
+
+  /**
+   * A registered user. Celebs are registered with the collection's "Register Celeb" request, so
+   * their username is {@code celeb_<name>} and the profile requests address them by name.
+   */
+  record Member(String name, String username, String email, String token) {
+
+    Map<String, String> vars() {
+      return Map.of("USERNAME", name, "EMAIL", email, "PASSWORD", PASSWORD, "token", token);
+    }
+  }
+
+  final List<Member> celebs = new CopyOnWriteArrayList<>();
+  final List<Member> readers = new CopyOnWriteArrayList<>();
+  final List<String> slugs = new CopyOnWriteArrayList<>();
+  final String run;
+
+  World(String run) {
+    this.run = run;
+  }
+
+  static World seed(Conduit conduit, LoadTest.Options options) throws Exception {
+    var world = new World(Long.toString(System.currentTimeMillis(), 36));
+    var random = new Random(options.seed());
+
+    parallel(
+        options.authors(),
+        i -> {
+          var name = world.run + "_author" + i;
+          var email = name + "@example.com";
+          var response =
+              conduit.send(
+                  "Profiles/Register Celeb",
+                  Map.of("USERNAME", name, "EMAIL", email, "PASSWORD", PASSWORD));
+          var celeb = new Member(name, "celeb_" + name, "celeb_" + email, token(response));
+          world.celebs.add(celeb);
+          for (int a = 0; a < options.articles(); a++) {
+            var article = conduit.send("Articles/Create Article", celeb.vars());
+            world.slugs.add(article.json("article", "slug"));
+          }
+        });
+
+    var follows = new ArrayList<List<Member>>();
+    var favorites = new ArrayList<List<String>>();
+    for (int i = 0; i < options.readers(); i++) {
+      follows.add(pick(random, world.celebs, options.follows()));
+      favorites.add(pick(random, world.slugs, options.follows()));
+    }
+    parallel(
+        options.readers(),
+        i -> {
+          var name = world.run + "_reader" + i;
+          var email = name + "@example.com";
+          var vars = Map.of("USERNAME", name, "EMAIL", email, "PASSWORD", PASSWORD);
+          var reader = new Member(name, name, email, token(conduit.send("Auth/Register", vars)));
+          world.readers.add(reader);
+          for (var celeb : follows.get(i)) {
+            conduit.send("Profiles/Follow Profile", with(reader, "USERNAME", celeb.name()));
+          }
+          for (var slug : favorites.get(i)) {
+            conduit.send("Favorite/Favorite Article", with(reader, "slug", slug));
+          }
+        });
+    return world;
+  }
+
+  /** The member's variables with one replaced, such as the slug or the profile to follow. */
+  static Map<String, String> with(Member member, String key, String value) {
+    var vars = new HashMap<>(member.vars());
+    vars.put(key, value);
+    return vars;
+  }
+
+  private static String token(Conduit.Response response) {
+    if (!response.ok()) {
+      throw new IllegalStateException(
+          "Seeding failed with " + response.status() + " " + response.body());
+    }
+    return response.json("user", "token");
+  }
+
+  private static <T> List<T> pick(Random random, List<T> from, int count) {
+    var picked = new ArrayList<T>();
+    for (int i = 0; i < Math.min(count, from.size()); i++) {
+      picked.add(from.get(random.nextInt(from.size())));
+    }
+    return picked;
+  }
+
+  interface Task {
+    void run(int i) throws Exception;
+  }
+
+  private static void parallel(int count, Task task) throws Exception {
+    try (var executor = Executors.newFixedThreadPool(16)) {
+      var futures = new ArrayList<Future<Void>>();
+      for (int i = 0; i < count; i++) {
+        int n = i;
+        futures.add(
+            executor.submit(
+                () -> {
+                  task.run(n);
+                  return null;
+                }));
+      }
+      for (var future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+      }
+    }
+  }
+}
@@ -1,5 +1,9 @@
 package com.avaje.jdk.realworld;
 
+import com.avaje.jdk.realworld.metrics.PrometheusMetrics;
+import com.avaje.jdk.realworld.metrics.SqlTiming;
+import com.avaje.jdk.realworld.web.filter.CompressionFilter;
+import com.avaje.jdk.realworld.web.filter.FilteringServerProvider;
 import io.avaje.config.Config;
 import io.avaje.inject.BeanScope;
 import io.avaje.jex.Jex;
@@ -8,6 +12,8 @@ import io.avaje.jex.core.json.JsonbJsonService;
 import io.avaje.jex.spi.ClassResourceLoader;
 import io.avaje.jex.staticcontent.StaticContent;
 import io.avaje.jsonb.Jsonb;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public final class AvajeRealWorldApplication {
 
@@ -20,9 +26,18 @@ public final class AvajeRealWorldApplication {
             .route("/")
             // needed to find resources on jlinked runtime
             .resourceLoader(ClassResourceLoader.fromClass(AvajeRealWorldApplication.class))
+            // compressed once at startup and served from memory
+            .preCompress()
             .build();
 
+    var metrics = beans.get(PrometheusMetrics.class);
+
     Jex.create()
+        .config(
+            c ->
+                c.executor(executor())
+                    .serverProvider(
+                        new FilteringServerProvider(beans.get(CompressionFilter.class))))
         .jsonService(new JsonbJsonService(beans.get(Jsonb.class)))
         .routing(beans.list(HttpService.class))
         .options(
@@ -34,6 +49,34 @@ public final class AvajeRealWorldApplication {
         // render.com port ENV variable
         .port(Config.getInt("PORT", 8080))
         .start()
-        .onShutdown(beans::close);
+        .onShutdown(
+            () -> {
+              beans.close();
+              // after the beans, their shutdown may still flush writes
+              SqlTiming.shutdown();
+            });
+
+    // on its own port so the public listener never serves it, 0 turns it off
+    var metricsPort = Config.getInt("metrics.port", 9091);
+    if (metricsPort > 0) {
+      Jex.create()
+          .get(Config.get("metrics.path", "/metrics"), ctx -> ctx.text(metrics.scrape()))
+          .port(metricsPort)
+          .start();
+    }
+  }
+
+  /** Run handlers on virtual threads (default) or on a fixed pool of platform threads. */
+  private static Executor executor() {
+    var mode = Config.get("server.executor", "virtual");
+    return switch (mode) {
+      case "virtual" ->
+          Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory());
+      case "platform" ->
+          Executors.newFixedThreadPool(
+              Config.getInt("server.platform.threads", 64),
+              Thread.ofPlatform().name("http-", 0).factory());
+      default -> throw new IllegalArgumentException("Unknown server.executor " + mode);
+    };
   }
 }
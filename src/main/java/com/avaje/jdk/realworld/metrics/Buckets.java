@@ -0,0 +1,68 @@
+package com.avaje.jdk.realworld.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Fixed bucket histogram recorded with LongAdders, so concurrent requests never contend. */
+final class Buckets {
+
+  /** Latency upper bounds in nanoseconds, 1ms to 10s. */
+  static final long[] LATENCY = {
+    1_000_000L,
+    2_500_000L,
+    5_000_000L,
+    10_000_000L,
+    25_000_000L,
+    50_000_000L,
+    100_000_000L,
+    250_000_000L,
+    500_000_000L,
+    1_000_000_000L,
+    2_500_000_000L,
+    5_000_000_000L,
+    10_000_000_000L
+  };
+
+  /** Body size upper bounds in bytes, 256B to 1MB. */
+  static final long[] SIZE = {256, 1024, 4096, 16_384, 65_536, 262_144, 1_048_576};
+
+  private final long[] bounds;
+  // one extra for +Inf
+  private final LongAdder[] counts;
+  private final LongAdder sum = new LongAdder();
+
+  Buckets(long[] bounds) {
+    this.bounds = bounds;
+    this.counts = new LongAdder[bounds.length + 1];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  void record(long value) {
+    int i = 0;
+    while (i < bounds.length && value > bounds[i]) {
+      i++;
+    }
+    counts[i].increment();
+    sum.add(value);
+  }
+
+  long[] bounds() {
+    return bounds;
+  }
+
+  /** Cumulative counts per bound, the last entry is the +Inf bucket and so the total count. */
+  long[] cumulative() {
+    var cumulative = new long[counts.length];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      total += counts[i].sum();
+      cumulative[i] = total;
+    }
+    return cumulative;
+  }
+
+  long sum() {
+    return sum.sum();
+  }
+}
@@ -0,0 +1,106 @@
+package com.avaje.jdk.realworld.metrics;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.avaje.jdk.realworld.web.filter.CompressionFilter;
+import io.avaje.http.api.Controller;
+import io.avaje.http.api.Filter;
+import io.avaje.http.api.ValidationException;
+import io.avaje.jex.http.Context;
+import io.avaje.jex.http.HttpFilter.FilterChain;
+import io.avaje.jex.http.HttpResponseException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records latency, status, in-flight, body size and DB time metrics per method and path template
+ * of the API routes, and writes the access log.
+ */
+@Controller
+public final class MetricsFilter {
+
+  private static final Logger ACCESS = LoggerFactory.getLogger("access");
+
+  private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+  @Filter
+  void metrics(Context ctx, FilterChain chain) {
+
+    if (!ctx.path().startsWith("/api/")) {
+      chain.proceed();
+      return;
+    }
+
+    var route = route(ctx.method(), ctx.matchedPath());
+    route.start();
+    var start = System.nanoTime();
+    var status = 500;
+    var db = SqlStats.begin();
+    try {
+      chain.proceed();
+      status = ctx.status();
+    } catch (RuntimeException e) {
+      status = status(e);
+      throw e;
+    } finally {
+      db.close();
+      var nanos = System.nanoTime() - start;
+      var responseSize = responseSize(ctx);
+      route.end(nanos, status, requestSize(ctx), responseSize, db.nanos(), db.statements());
+      if (ACCESS.isInfoEnabled()) {
+        ACCESS.info(
+            "{} {} {} {}ms db={}ms/{} {}B",
+            ctx.method(),
+            ctx.path(),
+            status,
+            millis(nanos),
+            millis(db.nanos()),
+            db.statements(),
+            responseSize);
+      }
+    }
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.1f", nanos / 1_000_000.0);
+  }
+
+  private RouteMetrics route(String method, String path) {
+    var key = method + ' ' + path;
+    var route = routes.get(key);
+    return route != null
+        ? route
+        : routes.computeIfAbsent(key, k -> new RouteMetrics(method, path));
+  }
+
+  /** The status the exception handlers answer with, mirrors ErrorHandlers. */
+  private static int status(RuntimeException e) {
+    return switch (e) {
+      case HttpResponseException h -> h.status();
+      case ValidationException _ -> 422;
+      case IllegalArgumentException _ -> 422;
+      case JWTVerificationException _ -> 403;
+      default -> 500;
+    };
+  }
+
+  private static long requestSize(Context ctx) {
+    var length = ctx.header("Content-Length");
+    return length == null ? -1 : Long.parseLong(length);
+  }
+
+  private static long responseSize(Context ctx) {
+    var exchange = ctx.jdkExchange();
+    if (exchange.getAttribute(CompressionFilter.WIRE_BYTES) instanceof Long wire) {
+      return wire;
+    }
+    var length = exchange.getResponseHeaders().getFirst("Content-Length");
+    return length == null ? -1 : Long.parseLong(length);
+  }
+
+  Collection<RouteMetrics> routes() {
+    return routes.values();
+  }
+}
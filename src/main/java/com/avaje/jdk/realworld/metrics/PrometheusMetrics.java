@@ -0,0 +1,330 @@
+package com.avaje.jdk.realworld.metrics;
+
+import com.avaje.jdk.realworld.web.ArticleJsonCache;
+import com.avaje.jdk.realworld.web.ArticleListQueries;
+import com.avaje.jdk.realworld.web.FavoriteWrites;
+import com.avaje.jdk.realworld.web.filter.BulkheadFilter;
+import com.avaje.jdk.realworld.web.filter.CompressionFilter;
+import com.avaje.jdk.realworld.web.service.TokenService;
+import jakarta.inject.Singleton;
+import java.util.Comparator;
+import java.util.List;
+
+/** Renders the route metrics and the component statistics in the Prometheus text format. */
+@Singleton
+public final class PrometheusMetrics {
+
+  private static final double NANOS = 1e9;
+
+  private final MetricsFilter routes;
+  private final TokenService tokenService;
+  private final ArticleJsonCache articleCache;
+  private final ArticleListQueries listQueries;
+  private final BulkheadFilter bulkhead;
+  private final CompressionFilter compression;
+  private final FavoriteWrites favoriteWrites;
+
+  PrometheusMetrics(
+      MetricsFilter routes,
+      TokenService tokenService,
+      ArticleJsonCache articleCache,
+      ArticleListQueries listQueries,
+      BulkheadFilter bulkhead,
+      CompressionFilter compression,
+      FavoriteWrites favoriteWrites) {
+
+    this.routes = routes;
+    this.tokenService = tokenService;
+    this.articleCache = articleCache;
+    this.listQueries = listQueries;
+    this.bulkhead = bulkhead;
+    this.compression = compression;
+    this.favoriteWrites = favoriteWrites;
+  }
+
+  public String scrape() {
+    var out = new StringBuilder(16 * 1024);
+    routeMetrics(out);
+    componentMetrics(out);
+    return out.toString();
+  }
+
+  private void routeMetrics(StringBuilder out) {
+    var sorted =
+        routes.routes().stream()
+            .sorted(Comparator.comparing(RouteMetrics::route).thenComparing(RouteMetrics::method))
+            .toList();
+
+    header(out, "http_server_requests_seconds", "histogram", "Request latency by route");
+    for (var route : sorted) {
+      histogram(out, "http_server_requests_seconds", labels(route), route.latency(), NANOS);
+    }
+    header(out, "http_server_responses_total", "counter", "Responses by route and status");
+    for (var route : sorted) {
+      route
+          .statuses()
+          .forEach(
+              (status, count) ->
+                  sample(
+                      out,
+                      "http_server_responses_total",
+                      labels(route) + ",status=\"" + status + '"',
+                      count));
+    }
+    header(out, "http_server_db_seconds", "histogram", "DB time per request by route");
+    for (var route : sorted) {
+      histogram(out, "http_server_db_seconds", labels(route), route.dbTime(), NANOS);
+    }
+    header(out, "http_server_db_statements_total", "counter", "SQL statements run by route");
+    for (var route : sorted) {
+      sample(out, "http_server_db_statements_total", labels(route), route.dbStatements());
+    }
+    header(out, "http_server_requests_in_flight", "gauge", "Requests being handled by route");
+    for (var route : sorted) {
+      sample(out, "http_server_requests_in_flight", labels(route), route.inFlight());
+    }
+    header(out, "http_server_request_size_bytes", "histogram", "Request body size by route");
+    for (var route : sorted) {
+      histogram(out, "http_server_request_size_bytes", labels(route), route.requestBytes(), 1);
+    }
+    header(
+        out,
+        "http_server_response_size_bytes",
+        "histogram",
+        "Response body size on the wire by route");
+    for (var route : sorted) {
+      histogram(out, "http_server_response_size_bytes", labels(route), route.responseBytes(), 1);
+    }
+  }
+
+  private void componentMetrics(StringBuilder out) {
+    counter(
+        out,
+        "realworld_token_cache_hits_total",
+        "Verified token cache hits",
+        tokenService.cacheHits());
+    counter(
+        out,
+        "realworld_token_cache_misses_total",
+        "Verified token cache misses",
+        tokenService.cacheMisses());
+    gauge(out, "realworld_token_cache_entries", "Verified tokens cached", tokenService.cacheSize());
+
+    counter(
+        out, "realworld_article_cache_hits_total", "Article JSON cache hits", articleCache.hits());
+    counter(
+        out,
+        "realworld_article_cache_misses_total",
+        "Article JSON cache misses",
+        articleCache.misses());
+    counter(
+        out,
+        "realworld_article_cache_evictions_total",
+        "Article JSON cache evictions",
+        articleCache.evictions());
+    gauge(out, "realworld_article_cache_entries", "Articles cached", articleCache.size());
+    gauge(
+        out,
+        "realworld_article_cache_bytes",
+        "Approximate size of the cached article JSON",
+        articleCache.bytes());
+
+    gauge(out, "realworld_bulkhead_permits", "Concurrent API requests allowed", bulkhead.permits());
+    gauge(
+        out, "realworld_bulkhead_in_flight", "API requests holding a permit", bulkhead.inFlight());
+    gauge(
+        out,
+        "realworld_bulkhead_queue_depth",
+        "API requests waiting for a permit",
+        bulkhead.queueDepth());
+    counter(
+        out,
+        "realworld_bulkhead_rejected_total",
+        "API requests rejected with 503",
+        bulkhead.rejected());
+    counter(
+        out,
+        "realworld_bulkhead_acquired_total",
+        "API requests that acquired a permit",
+        bulkhead.waitCount());
+    counter(
+        out,
+        "realworld_bulkhead_wait_seconds_total",
+        "Time spent waiting for a permit",
+        bulkhead.waitNanos() / NANOS);
+    gauge(
+        out,
+        "realworld_bulkhead_max_wait_seconds",
+        "Longest wait for a permit",
+        bulkhead.maxWaitNanos() / NANOS);
+
+    gauge(
+        out,
+        "realworld_favorite_queue_depth",
+        "Favorite changes queued for the next flush",
+        favoriteWrites.queueDepth());
+    counter(
+        out,
+        "realworld_favorite_queued_total",
+        "Favorite changes queued, including those collapsed into a queued change",
+        favoriteWrites.enqueued());
+    counter(
+        out,
+        "realworld_favorite_direct_total",
+        "Favorite changes written directly because the queue was full",
+        favoriteWrites.direct());
+    counter(
+        out,
+        "realworld_favorite_flushes_total",
+        "Favorite queue flushes",
+        favoriteWrites.flushes());
+    counter(
+        out,
+        "realworld_favorite_flushed_total",
+        "Favorite changes written by flushes",
+        favoriteWrites.flushed());
+    counter(
+        out,
+        "realworld_favorite_flush_seconds_total",
+        "Time writing favorite queue flushes",
+        favoriteWrites.flushNanos() / NANOS);
+    gauge(
+        out,
+        "realworld_favorite_max_flush_seconds",
+        "Longest favorite queue flush",
+        favoriteWrites.maxFlushNanos() / NANOS);
+    counter(
+        out,
+        "realworld_favorite_failures_total",
+        "Queued favorite changes that could not be written",
+        favoriteWrites.failures());
+
+    counter(
+        out,
+        "realworld_db_replica_connections_total",
+        "Connections taken from the read replica pool",
+        ReplicaReads.replicaConnections());
+    counter(
+        out,
+        "realworld_db_primary_connections_total",
+        "Connections taken from the primary pool",
+        ReplicaReads.primaryConnections());
+
+    counter(
+        out, "realworld_sql_statements_total", "SQL statements executed", SqlStats.statements());
+    counter(
+        out,
+        "realworld_sql_seconds_total",
+        "Time executing SQL statements",
+        SqlStats.nanos() / NANOS);
+    counter(
+        out,
+        "realworld_sql_slow_total",
+        "SQL statements over sql.slow.thresholdMillis",
+        SqlStats.slowStatements());
+
+    var variants = listQueries.variants();
+    variantMetrics(
+        out,
+        "realworld_article_list_pages_total",
+        "counter",
+        "Article list pages served by filter combination",
+        variants,
+        v -> v.pages());
+    variantMetrics(
+        out,
+        "realworld_article_list_page_seconds_total",
+        "counter",
+        "Time running the article list statement and rendering its page",
+        variants,
+        v -> v.pageNanos() / NANOS);
+
+    header(
+        out, "realworld_compression_responses_total", "counter", "Responses by compression result");
+    sample(
+        out,
+        "realworld_compression_responses_total",
+        "result=\"compressed\"",
+        compression.compressed());
+    sample(
+        out, "realworld_compression_responses_total", "result=\"skipped\"", compression.skipped());
+    counter(
+        out,
+        "realworld_compression_in_bytes_total",
+        "Uncompressed bytes of compressed responses",
+        compression.bytesIn());
+    counter(
+        out,
+        "realworld_compression_out_bytes_total",
+        "Compressed bytes of compressed responses",
+        compression.bytesOut());
+  }
+
+  private interface VariantValue {
+    Number value(ArticleListQueries.Variant variant);
+  }
+
+  private static void variantMetrics(
+      StringBuilder out,
+      String name,
+      String type,
+      String help,
+      List<ArticleListQueries.Variant> variants,
+      VariantValue value) {
+    header(out, name, type, help);
+    for (var variant : variants) {
+      sample(out, name, "variant=\"" + escape(variant.name()) + '"', value.value(variant));
+    }
+  }
+
+  private static String labels(RouteMetrics route) {
+    return "method=\"" + route.method() + "\",route=\"" + escape(route.route()) + '"';
+  }
+
+  private static void histogram(
+      StringBuilder out, String name, String labels, Buckets buckets, double unit) {
+    var bounds = buckets.bounds();
+    var cumulative = buckets.cumulative();
+    for (int i = 0; i < bounds.length; i++) {
+      sample(
+          out, name + "_bucket", labels + ",le=\"" + format(bounds[i] / unit) + '"', cumulative[i]);
+    }
+    var count = cumulative[bounds.length];
+    sample(out, name + "_bucket", labels + ",le=\"+Inf\"", count);
+    sample(out, name + "_sum", labels, buckets.sum() / unit);
+    sample(out, name + "_count", labels, count);
+  }
+
+  private static void counter(StringBuilder out, String name, String help, Number value) {
+    header(out, name, "counter", help);
+    sample(out, name, null, value);
+  }
+
+  private static void gauge(StringBuilder out, String name, String help, Number value) {
+    header(out, name, "gauge", help);
+    sample(out, name, null, value);
+  }
+
+  private static void header(StringBuilder out, String name, String type, String help) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder out, String name, String labels, Number value) {
+    out.append(name);
+    if (labels != null) {
+      out.append('{').append(labels).append('}');
+    }
+    out.append(' ').append(value instanceof Double d ? format(d) : value.toString()).append('\n');
+  }
+
+  private static String format(double value) {
+    return value == Math.rint(value) && Math.abs(value) < 1e15
+        ? Long.toString((long) value)
+        : Double.toString(value);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
@@ -0,0 +1,83 @@
+package com.avaje.jdk.realworld.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Marks the reads of the request running on the current thread as safe to serve from the read
+ * replica, when {@code datasource.replica.url} configures one, and counts the connections taken
+ * from each pool.
+ */
+public final class ReplicaReads {
+
+  private static final ThreadLocal<Boolean> CURRENT = new ThreadLocal<>();
+  private static final LongAdder REPLICA = new LongAdder();
+  private static final LongAdder PRIMARY = new LongAdder();
+
+  private static volatile boolean configured;
+
+  private ReplicaReads() {}
+
+  /** The previous routing of the thread, restored on close. */
+  public static final class Scope implements AutoCloseable {
+
+    private final Boolean parent;
+
+    private Scope(Boolean parent) {
+      this.parent = parent;
+    }
+
+    @Override
+    public void close() {
+      CURRENT.set(parent);
+    }
+  }
+
+  /** Take the connections of this thread from the replica until the scope is closed. */
+  public static Scope begin() {
+    var scope = new Scope(CURRENT.get());
+    CURRENT.set(Boolean.TRUE);
+    return scope;
+  }
+
+  /**
+   * Take the connections of this thread from the primary until the scope is closed, used for reads
+   * whose results outlive the request in a process wide cache.
+   */
+  public static Scope primary() {
+    var scope = new Scope(CURRENT.get());
+    CURRENT.set(Boolean.FALSE);
+    return scope;
+  }
+
+  /** Return true when this thread is inside a scope, whether or not a replica is configured. */
+  public static boolean active() {
+    return CURRENT.get() == Boolean.TRUE;
+  }
+
+  /** Return true when a replica is configured, otherwise every read goes to the primary. */
+  public static boolean configured() {
+    return configured;
+  }
+
+  static void configure() {
+    configured = true;
+  }
+
+  /** Return true and count the connection when this thread reads from the replica. */
+  static boolean replica() {
+    if (active()) {
+      REPLICA.increment();
+      return true;
+    }
+    PRIMARY.increment();
+    return false;
+  }
+
+  public static long replicaConnections() {
+    return REPLICA.sum();
+  }
+
+  public static long primaryConnections() {
+    return PRIMARY.sum();
+  }
+}
@@ -0,0 +1,86 @@
+package com.avaje.jdk.realworld.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Latency, status, in-flight, body size and DB time metrics of one method and path template. */
+final class RouteMetrics {
+
+  private final String method;
+  private final String route;
+  private final Buckets latency = new Buckets(Buckets.LATENCY);
+  private final Buckets requestBytes = new Buckets(Buckets.SIZE);
+  private final Buckets responseBytes = new Buckets(Buckets.SIZE);
+  private final Buckets dbTime = new Buckets(Buckets.LATENCY);
+  private final LongAdder dbStatements = new LongAdder();
+  private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+  private final LongAdder inFlight = new LongAdder();
+
+  RouteMetrics(String method, String route) {
+    this.method = method;
+    this.route = route;
+  }
+
+  void start() {
+    inFlight.increment();
+  }
+
+  void end(
+      long nanos, int status, long requestSize, long responseSize, long dbNanos, int statements) {
+    inFlight.decrement();
+    latency.record(nanos);
+    var counter = statuses.get(status);
+    if (counter == null) {
+      counter = statuses.computeIfAbsent(status, s -> new LongAdder());
+    }
+    counter.increment();
+    if (requestSize >= 0) {
+      requestBytes.record(requestSize);
+    }
+    if (responseSize >= 0) {
+      responseBytes.record(responseSize);
+    }
+    dbTime.record(dbNanos);
+    dbStatements.add(statements);
+  }
+
+  String method() {
+    return method;
+  }
+
+  String route() {
+    return route;
+  }
+
+  Buckets latency() {
+    return latency;
+  }
+
+  Buckets requestBytes() {
+    return requestBytes;
+  }
+
+  Buckets responseBytes() {
+    return responseBytes;
+  }
+
+  Buckets dbTime() {
+    return dbTime;
+  }
+
+  long dbStatements() {
+    return dbStatements.sum();
+  }
+
+  long inFlight() {
+    return inFlight.sum();
+  }
+
+  Map<Integer, Long> statuses() {
+    var counts = new TreeMap<Integer, Long>();
+    statuses.forEach((status, count) -> counts.put(status, count.sum()));
+    return counts;
+  }
+}
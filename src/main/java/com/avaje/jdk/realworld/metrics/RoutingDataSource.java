@@ -0,0 +1,74 @@
+package com.avaje.jdk.realworld.metrics;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * DataSource handing out replica connections to threads inside a {@link ReplicaReads} scope and
+ * primary connections to everything else, including transactions, background jobs and startup.
+ */
+final class RoutingDataSource implements DataSource {
+
+  private final DataSource primary;
+  private final DataSource replica;
+
+  RoutingDataSource(DataSource primary, DataSource replica) {
+    this.primary = primary;
+    this.replica = replica;
+  }
+
+  private DataSource target() {
+    return ReplicaReads.replica() ? replica : primary;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return target().getConnection();
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return target().getConnection(username, password);
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return primary.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    primary.setLogWriter(out);
+    replica.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    primary.setLoginTimeout(seconds);
+    replica.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return primary.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return primary.getParentLogger();
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    return iface.isInstance(this) ? iface.cast(this) : primary.unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return iface.isInstance(this) || primary.isWrapperFor(iface);
+  }
+}
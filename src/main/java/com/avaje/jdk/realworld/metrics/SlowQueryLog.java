@@ -0,0 +1,123 @@
+package com.avaje.jdk.realworld.metrics;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs statements slower than the threshold, normalized and with the types of their parameters but
+ * never the values.
+ *
+ * <p>When enabled, read only statements over the explain threshold are run again in the
+ * background under {@code EXPLAIN (ANALYZE, BUFFERS)} in a rolled back transaction, at most once
+ * per statement per interval, and the plan is logged with them.
+ */
+final class SlowQueryLog {
+
+  private static final Logger LOG = LoggerFactory.getLogger("sql.slow");
+
+  private final long thresholdNanos;
+  private final boolean explain;
+  private final long explainNanos;
+  private final long explainIntervalNanos;
+  private final DataSource dataSource;
+  private final Map<String, Long> explained = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor explainer;
+
+  SlowQueryLog(
+      long thresholdMillis,
+      boolean explain,
+      long explainMillis,
+      long explainIntervalSeconds,
+      DataSource dataSource) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    this.explain = explain;
+    this.explainNanos = TimeUnit.MILLISECONDS.toNanos(explainMillis);
+    this.explainIntervalNanos = TimeUnit.SECONDS.toNanos(explainIntervalSeconds);
+    this.dataSource = dataSource;
+    // one plan at a time, dropping the rest rather than queueing load on a slow database
+    this.explainer =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4),
+            Thread.ofPlatform().name("sql-explain").daemon().factory());
+  }
+
+  boolean isSlow(long nanos) {
+    return nanos >= thresholdNanos;
+  }
+
+  void log(String sql, List<Object> parameters, long nanos) {
+    SqlStats.slow();
+    var normalized = SqlStats.normalize(sql);
+    var millis = nanos / 1_000_000.0;
+    LOG.warn(
+        "{} ms {} params={}",
+        String.format("%.1f", millis),
+        normalized,
+        SqlStats.shapes(parameters));
+
+    if (explain && nanos >= explainNanos && readOnly(normalized) && due(normalized)) {
+      try {
+        explainer.execute(() -> explain(sql, normalized, parameters));
+      } catch (RejectedExecutionException e) {
+        // busy with other plans
+      }
+    }
+  }
+
+  private boolean due(String normalized) {
+    var now = System.nanoTime();
+    var last = explained.get(normalized);
+    if (last != null && now - last < explainIntervalNanos) {
+      return false;
+    }
+    if (explained.size() > 1000) {
+      explained.clear();
+    }
+    explained.put(normalized, now);
+    return true;
+  }
+
+  static boolean readOnly(String normalized) {
+    var sql = normalized.toUpperCase(Locale.ROOT);
+    return (sql.startsWith("SELECT") || sql.startsWith("WITH"))
+        && !sql.contains("INSERT ")
+        && !sql.contains("UPDATE ")
+        && !sql.contains("DELETE ");
+  }
+
+  private void explain(String sql, String normalized, List<Object> parameters) {
+    try (var connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      try (var statement = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + sql)) {
+        for (int i = 0; i < parameters.size(); i++) {
+          statement.setObject(i + 1, parameters.get(i));
+        }
+        var plan = new StringBuilder();
+        try (var rs = statement.executeQuery()) {
+          while (rs.next()) {
+            plan.append('\n').append(rs.getString(1));
+          }
+        }
+        LOG.warn("plan of {}{}", normalized, plan);
+      } finally {
+        connection.rollback();
+      }
+    } catch (SQLException e) {
+      LOG.debug("Could not explain {}", normalized, e);
+    }
+  }
+}
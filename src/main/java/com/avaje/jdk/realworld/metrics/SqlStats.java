@@ -0,0 +1,98 @@
+package com.avaje.jdk.realworld.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Statement counts and DB time, in total and for the request running on the current thread, so the
+ * route metrics and the access log can attribute DB time to the handler that issued it.
+ */
+public final class SqlStats {
+
+  private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+  private static final LongAdder STATEMENTS = new LongAdder();
+  private static final LongAdder NANOS = new LongAdder();
+  private static final LongAdder SLOW = new LongAdder();
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern LITERALS =
+      Pattern.compile("'(?:[^']|'')*'|\\b\\d+(?:\\.\\d+)?\\b");
+
+  private SqlStats() {}
+
+  /** DB time and statement count of one request. */
+  public static final class Scope implements AutoCloseable {
+
+    private final Scope parent;
+    private int statements;
+    private long nanos;
+
+    private Scope(Scope parent) {
+      this.parent = parent;
+    }
+
+    public int statements() {
+      return statements;
+    }
+
+    public long nanos() {
+      return nanos;
+    }
+
+    @Override
+    public void close() {
+      CURRENT.set(parent);
+    }
+  }
+
+  /** Start attributing the statements run on this thread to a new scope. */
+  public static Scope begin() {
+    var scope = new Scope(CURRENT.get());
+    CURRENT.set(scope);
+    return scope;
+  }
+
+  static void record(long nanos) {
+    STATEMENTS.increment();
+    NANOS.add(nanos);
+    var scope = CURRENT.get();
+    if (scope != null) {
+      scope.statements++;
+      scope.nanos += nanos;
+    }
+  }
+
+  static void slow() {
+    SLOW.increment();
+  }
+
+  public static long statements() {
+    return STATEMENTS.sum();
+  }
+
+  public static long nanos() {
+    return NANOS.sum();
+  }
+
+  public static long slowStatements() {
+    return SLOW.sum();
+  }
+
+  /** The statement on one line with any inline literals replaced by ?. */
+  static String normalize(String sql) {
+    return LITERALS.matcher(WHITESPACE.matcher(sql).replaceAll(" ").strip()).replaceAll("?");
+  }
+
+  /** The types of the bound values, never the values themselves. */
+  static String shapes(List<Object> parameters) {
+    var sb = new StringBuilder("[");
+    for (int i = 0; i < parameters.size(); i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      var value = parameters.get(i);
+      sb.append(value == null ? "null" : value.getClass().getSimpleName());
+    }
+    return sb.append(']').toString();
+  }
+}
@@ -0,0 +1,88 @@
+package com.avaje.jdk.realworld.metrics;
+
+import io.avaje.config.Config;
+import io.avaje.spi.ServiceProvider;
+import io.ebean.DatabaseBuilder;
+import io.ebean.config.DatabaseConfigProvider;
+import io.ebean.datasource.DataSourceConfig;
+import io.ebean.datasource.DataSourceFactory;
+import io.ebean.datasource.DataSourcePool;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.DataSource;
+
+/**
+ * Puts the statement timing DataSource in front of the connection pool Ebean would otherwise
+ * create from the {@code datasource.db} settings.
+ *
+ * <p>When {@code datasource.replica.url} is set a second, read only pool is created for it and
+ * both sit behind a {@link RoutingDataSource}, so the reads marked by {@link ReplicaReads} go to
+ * the replica. Its credentials and pool size default to those of the primary.
+ *
+ * <p>Ebean only shuts down a DataSource that is the pool itself, so the pools created here are
+ * shut down by {@link #shutdown()} once the beans using the database are closed.
+ */
+@ServiceProvider
+public class SqlTiming implements DatabaseConfigProvider {
+
+  private static final boolean TIMING = Config.getBool("sql.timing.enabled", true);
+
+  private static final List<DataSourcePool> POOLS = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void apply(DatabaseBuilder config) {
+    var replicaUrl = Config.get("datasource.replica.url", "");
+    if (!TIMING && replicaUrl.isBlank()) {
+      return;
+    }
+    var primaryConfig = config.getDataSourceConfig();
+    var dataSource = timed(pool(config.getName(), primaryConfig));
+    if (!replicaUrl.isBlank()) {
+      var replica = replicaConfig(primaryConfig, replicaUrl);
+      dataSource =
+          new RoutingDataSource(
+              dataSource, timed(pool(config.getName() + "-replica", replica)));
+      ReplicaReads.configure();
+    }
+    config.dataSource(dataSource);
+  }
+
+  /** Shut down the pools created for the database, closing their connections. */
+  public static void shutdown() {
+    for (var pool : POOLS) {
+      pool.shutdown();
+    }
+    POOLS.clear();
+  }
+
+  private static DataSourcePool pool(String name, DataSourceConfig dataSourceConfig) {
+    var pool = DataSourceFactory.create(name, dataSourceConfig);
+    POOLS.add(pool);
+    return pool;
+  }
+
+  private static DataSourceConfig replicaConfig(DataSourceConfig primary, String url) {
+    var replica = primary.copy();
+    replica.setUrl(url);
+    replica.setUsername(Config.get("datasource.replica.username", primary.getUsername()));
+    replica.setPassword(Config.get("datasource.replica.password", primary.getPassword()));
+    replica.setMaxConnections(
+        Config.getInt("datasource.replica.maxConnections", primary.getMaxConnections()));
+    replica.setReadOnly(true);
+    return replica;
+  }
+
+  private static DataSource timed(DataSourcePool pool) {
+    if (!TIMING) {
+      return pool;
+    }
+    var slowLog =
+        new SlowQueryLog(
+            Config.getLong("sql.slow.thresholdMillis", 100),
+            Config.getBool("sql.explain.enabled", false),
+            Config.getLong("sql.explain.thresholdMillis", 500),
+            Config.getLong("sql.explain.intervalSeconds", 300),
+            pool);
+    return new TimedDataSource(pool, slowLog);
+  }
+}
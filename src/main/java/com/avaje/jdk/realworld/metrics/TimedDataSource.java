@@ -0,0 +1,167 @@
+package com.avaje.jdk.realworld.metrics;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * DataSource that times every statement executed through its connections and hands statements
+ * over the slow threshold to the {@link SlowQueryLog}.
+ */
+final class TimedDataSource implements DataSource {
+
+  private final DataSource delegate;
+  private final SlowQueryLog slowLog;
+
+  TimedDataSource(DataSource delegate, SlowQueryLog slowLog) {
+    this.delegate = delegate;
+    this.slowLog = slowLog;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return connection(delegate.getConnection());
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return connection(delegate.getConnection(username, password));
+  }
+
+  private Connection connection(Connection connection) {
+    return proxy(Connection.class, new ConnectionHandler(connection));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private final class ConnectionHandler implements InvocationHandler {
+
+    private final Connection connection;
+
+    ConnectionHandler(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      var result = TimedDataSource.invoke(connection, method, args);
+      return switch (method.getName()) {
+        case "prepareStatement" ->
+            proxy(PreparedStatement.class, new StatementHandler(result, (String) args[0]));
+        case "prepareCall" ->
+            proxy(CallableStatement.class, new StatementHandler(result, (String) args[0]));
+        case "createStatement" -> proxy(Statement.class, new StatementHandler(result, null));
+        default -> result;
+      };
+    }
+  }
+
+  private final class StatementHandler implements InvocationHandler {
+
+    private final Object statement;
+    private final String sql;
+    private final List<Object> parameters = new ArrayList<>();
+
+    StatementHandler(Object statement, String sql) {
+      this.statement = statement;
+      this.sql = sql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      var name = method.getName();
+      if (name.startsWith("execute")) {
+        return execute(method, args);
+      }
+      if (name.startsWith("set")
+          && args != null
+          && args.length >= 2
+          && args[0] instanceof Integer index) {
+        bind(index, name.equals("setNull") ? null : args[1]);
+      } else if (name.equals("clearParameters")) {
+        parameters.clear();
+      }
+      return TimedDataSource.invoke(statement, method, args);
+    }
+
+    private void bind(int index, Object value) {
+      while (parameters.size() < index) {
+        parameters.add(null);
+      }
+      parameters.set(index - 1, value);
+    }
+
+    private Object execute(Method method, Object[] args) throws Throwable {
+      // plain statements carry the sql on execute
+      var executed = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+      var start = System.nanoTime();
+      try {
+        return TimedDataSource.invoke(statement, method, args);
+      } finally {
+        var nanos = System.nanoTime() - start;
+        SqlStats.record(nanos);
+        if (slowLog.isSlow(nanos) && executed != null) {
+          slowLog.log(executed, new ArrayList<>(parameters), nanos);
+        }
+      }
+    }
+  }
+
+  @Override
+  public PrintWriter getLogWriter() throws SQLException {
+    return delegate.getLogWriter();
+  }
+
+  @Override
+  public void setLogWriter(PrintWriter out) throws SQLException {
+    delegate.setLogWriter(out);
+  }
+
+  @Override
+  public void setLoginTimeout(int seconds) throws SQLException {
+    delegate.setLoginTimeout(seconds);
+  }
+
+  @Override
+  public int getLoginTimeout() throws SQLException {
+    return delegate.getLoginTimeout();
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    return delegate.getParentLogger();
+  }
+
+  @Override
+  public <T> T unwrap(Class<T> iface) throws SQLException {
+    return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(Class<?> iface) throws SQLException {
+    return iface.isInstance(this) || delegate.isWrapperFor(iface);
+  }
+}
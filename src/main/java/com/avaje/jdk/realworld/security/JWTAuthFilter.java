@@ -1,20 +1,38 @@
 package com.avaje.jdk.realworld.security;
 
 import com.avaje.jdk.realworld.exception.AppError;
+import com.avaje.jdk.realworld.metrics.ReplicaReads;
 import com.avaje.jdk.realworld.web.service.TokenService;
+import io.avaje.config.Config;
 import io.avaje.http.api.Controller;
 import io.avaje.http.api.Filter;
 import io.avaje.jex.http.Context;
 import io.avaje.jex.http.HttpFilter.FilterChain;
+import java.util.List;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Authenticates the JWT routes and, when a read replica is configured, routes the GET requests of
+ * the article, profile and tag handlers to it.
+ *
+ * <p>A user's reads stay on the primary for {@code datasource.replica.pinMillis} after any of
+ * their non GET requests, so they see their own writes. The window is tracked per instance, a read
+ * balanced to another instance may still see the replica's lag.
+ */
 @Controller
 public class JWTAuthFilter {
   private static final Logger LOG = LoggerFactory.getLogger(JWTAuthFilter.class);
 
+  private static final List<String> REPLICA_PATHS =
+      List.of("/api/articles", "/api/profiles/", "/api/tags");
+
   private final TokenService tokenService;
+  private final RecentWrites recentWrites =
+      new RecentWrites(
+          Config.getInt("datasource.replica.pinMaxUsers", 100_000),
+          Config.getLong("datasource.replica.pinMillis", 5_000));
 
   JWTAuthFilter(TokenService tokenService) {
 
@@ -26,7 +44,7 @@ public class JWTAuthFilter {
 
     if (!ctx.routeRoles().contains(AppRole.JWT)) {
 
-      chain.proceed();
+      proceed(ctx, null, chain);
       return;
     }
 
@@ -36,10 +54,37 @@ public class JWTAuthFilter {
       ctx.status(401).json(new AppError("Unauthenticated"));
     } else {
       ctx.attribute("userId", userId);
+      proceed(ctx, userId, chain);
+    }
+  }
+
+  private void proceed(Context ctx, UUID userId, FilterChain chain) {
+    if (!"GET".equals(ctx.method())) {
+      try {
+        chain.proceed();
+      } finally {
+        if (userId != null && ReplicaReads.configured()) {
+          recentWrites.wrote(userId);
+        }
+      }
+    } else if (replicaPath(ctx.path()) && (userId == null || !recentWrites.pinned(userId))) {
+      try (var reads = ReplicaReads.begin()) {
+        chain.proceed();
+      }
+    } else {
       chain.proceed();
     }
   }
 
+  static boolean replicaPath(String path) {
+    for (var prefix : REPLICA_PATHS) {
+      if (path.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   UUID getUserId(Context ctx) {
     var authHeader = ctx.header("Authorization");
     if (authHeader != null && authHeader.startsWith("Token ")) {
@@ -0,0 +1,56 @@
+package com.avaje.jdk.realworld.security;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Users who sent a write within the last {@code pinMillis}, whose reads stay on the primary so
+ * they see their own changes while the replica catches up. Bounded to {@code maxSize} users, the
+ * expired ones are dropped first.
+ */
+final class RecentWrites {
+
+  private final ConcurrentHashMap<UUID, Long> until = new ConcurrentHashMap<>();
+  private final int maxSize;
+  private final long pinMillis;
+
+  RecentWrites(int maxSize, long pinMillis) {
+    this.maxSize = maxSize;
+    this.pinMillis = pinMillis;
+  }
+
+  /** Start, or restart, the user's window. */
+  void wrote(UUID userId) {
+    var now = System.currentTimeMillis();
+    if (until.size() >= maxSize && !until.containsKey(userId)) {
+      makeRoom(now);
+    }
+    until.put(userId, now + pinMillis);
+  }
+
+  /** Return true while the user's window is open. */
+  boolean pinned(UUID userId) {
+    var expiresAt = until.get(userId);
+    if (expiresAt == null) {
+      return false;
+    }
+    if (expiresAt <= System.currentTimeMillis()) {
+      until.remove(userId, expiresAt);
+      return false;
+    }
+    return true;
+  }
+
+  private void makeRoom(long now) {
+    until.values().removeIf(expiresAt -> expiresAt <= now);
+    var it = until.keySet().iterator();
+    while (until.size() >= maxSize && it.hasNext()) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  int size() {
+    return until.size();
+  }
+}
@@ -8,8 +8,12 @@ import com.avaje.jdk.realworld.models.request.UpdateArticleRequest;
 import com.avaje.jdk.realworld.models.request.UpdateArticleRequest.UpdateArticleBody;
 import com.avaje.jdk.realworld.security.AppRole;
 import com.avaje.jdk.realworld.security.Roles;
+import com.avaje.jdk.realworld.web.service.FeedFanout;
+import com.avaje.jdk.realworld.web.service.FollowGraph;
+import com.avaje.jdk.realworld.web.service.TagDictionary;
 import com.github.slugify.Slugify;
 import dev.mccue.jdbc.SQLFragment;
+import io.avaje.config.Config;
 import io.avaje.http.api.Controller;
 import io.avaje.http.api.Default;
 import io.avaje.http.api.Delete;
@@ -19,7 +23,9 @@ import io.avaje.http.api.Put;
 import io.avaje.jex.http.Context;
 import io.avaje.jex.http.HttpResponseException;
 import io.ebean.DB;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
@@ -31,328 +37,441 @@ public class ArticleController {
 
   private static final String ARTICLE = "article";
 
-  private static final String ARTICLE_SQL =
+  /**
+   * Insert the article and link its tags in one statement. The rendered article is built from the
+   * inserted row as a new article can't be favorited yet.
+   *
+   * <p>The article is fanned out to the followers' feeds in the same statement, unless the author
+   * has more than {@link FeedFanout#SYNC_MAX_FOLLOWERS} followers. Those are left to the batched
+   * background fan-out, recorded as pending in the same statement so a restart resumes it.
+   */
+  static final String CREATE_ARTICLE_SQL =
       """
-         SELECT
-             jsonb_build_object(
-                 'article', jsonb_build_object(
-                     'slug', realworld.article.slug,
-                     'title', realworld.article.title,
-                     'description', realworld.article.description,
-                     'body', realworld.article.body,
-                     'tagList', array(
-                         SELECT realworld.tag.name
-                         FROM realworld.article_tag
-                         LEFT JOIN realworld.tag ON realworld.tag.id = realworld.article_tag.tag_id
-                         WHERE realworld.article_tag.article_id = realworld.article.id
-                         ORDER BY realworld.tag.name
-                     ),
-                     'createdAt', realworld.article.created_at,
-                     'updatedAt', realworld.article.updated_at,
-                     'favorited', exists(
-                         SELECT id
-                         FROM realworld.favorite
-                         WHERE article_id = realworld.article.id AND user_id = ?
-                     ),
-                    'favoritesCount', (
-                         SELECT count(id)
-                         FROM realworld.favorite
-                         WHERE article_id = realworld.article.id
-                     ),
-                     'author', (
-                         SELECT jsonb_build_object(
-                             'username', realworld.user.username,
-                             'bio', realworld.user.bio,
-                             'image', realworld.user.image,
-                             'following', exists(
-                                 SELECT id
-                                 FROM realworld.follow
-                                 WHERE from_user_id = ? AND to_user_id = realworld.user.id
-                             )
-                         )
-                         FROM realworld.user
-                         WHERE realworld.user.id = realworld.article.user_id
-                 )
-             )) AS article
-         FROM realworld.article
-         WHERE id = ?
-         """;
+      WITH
+          new_article AS (
+              INSERT INTO realworld.article(id, user_id, title, slug, description, body)
+              VALUES (?, ?, ?, ?, ?, ?)
+              RETURNING *
+          ),
+          new_article_tag AS (
+              INSERT INTO realworld.article_tag(article_id, tag_id)
+              SELECT new_article.id, tag_id
+              FROM new_article, unnest(?::uuid[]) AS tag_id
+          ),
+          followers AS (
+              SELECT count(*) > ? AS many
+              FROM (
+                  SELECT 1
+                  FROM realworld.follow
+                  WHERE to_user_id = ?
+                  LIMIT ?
+              ) bounded
+          ),
+          feed_fan_out AS (
+              INSERT INTO realworld.feed_entry(user_id, created_at, article_id)
+              SELECT realworld.follow.from_user_id, new_article.created_at, new_article.id
+              FROM new_article
+              JOIN realworld.follow ON realworld.follow.to_user_id = new_article.user_id
+              WHERE NOT (SELECT many FROM followers)
+          ),
+          feed_fan_out_pending AS (
+              INSERT INTO realworld.feed_fanout_pending(article_id)
+              SELECT new_article.id
+              FROM new_article
+              WHERE (SELECT many FROM followers)
+          )
+      SELECT
+          jsonb_build_object(
+              'article', jsonb_build_object(
+                  'slug', new_article.slug,
+                  'title', new_article.title,
+                  'description', new_article.description,
+                  'body', new_article.body,
+                  'tagList', array(
+                      SELECT realworld.tag.name
+                      FROM realworld.tag
+                      WHERE realworld.tag.id = ANY(?::uuid[])
+                      ORDER BY realworld.tag.name
+                  ),
+                  'createdAt', new_article.created_at,
+                  'updatedAt', new_article.updated_at,
+                  'favorited', false,
+                  'favoritesCount', new_article.favorites_count,
+                  'author', (
+                      SELECT jsonb_build_object(
+                          'username', realworld.user.username,
+                          'bio', realworld.user.bio,
+                          'image', realworld.user.image,
+                          'following', exists(
+                              SELECT id
+                              FROM realworld.follow
+                              WHERE from_user_id = ? AND to_user_id = realworld.user.id
+                          )
+                      )
+                      FROM realworld.user
+                      WHERE realworld.user.id = new_article.user_id
+              )
+          )) AS article,
+          new_article.id,
+          new_article.created_at,
+          (SELECT many FROM followers) AS many_followers
+      FROM new_article
+      """;
+
+  private static final String FEED_KEYSET_CONDITION =
+      "(realworld.feed_entry.created_at, realworld.feed_entry.article_id) < (?, ?)";
+
+  private static final String FEED_ORDER_SQL =
+      """
+              ORDER BY realworld.feed_entry.created_at DESC, realworld.feed_entry.article_id DESC
+      """;
+
+  /**
+   * Ranked full-text search over the title, description and body tsvector, open for the keyset
+   * condition of the page. The GIN index yields the matches, only the page's rows are rendered.
+   */
+  private static final String SEARCH_SQL =
+      """
+      WITH
+          matches AS (
+              SELECT realworld.article.id, ts_rank(realworld.article.search, query) AS rank
+              FROM realworld.article, websearch_to_tsquery('english', ?) AS query
+              WHERE realworld.article.search @@ query
+          ),
+          page AS (
+              SELECT id, rank
+              FROM matches
+              %s
+              ORDER BY rank DESC, id DESC
+              LIMIT ?
+          )
+      SELECT
+      %s,
+      page.rank
+      FROM page
+      JOIN realworld.article ON realworld.article.id = page.id
+      ORDER BY page.rank DESC, page.id DESC
+      """;
+
+  private static final String SEARCH_FIRST_PAGE_SQL =
+      SEARCH_SQL.formatted("", ArticlePages.COLUMNS_SQL);
+
+  private static final String SEARCH_NEXT_PAGE_SQL =
+      SEARCH_SQL.formatted("WHERE (rank, id) < (?, ?)", ArticlePages.COLUMNS_SQL);
+
+  private static final byte[] EMPTY_PAGE =
+      """
+      {"articles": [], "nextCursor": null, "articlesCount": 0}"""
+          .getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * Everything a comments page depends on: the article's comment count, the latest update of a
+   * comment on the page and of its authors, and the authors, whose following flags come from the
+   * {@link FollowGraph}. Open for the keyset condition of the page.
+   */
+  private static final String COMMENTS_VERSION_SQL =
+      """
+      SELECT
+          realworld.article.id,
+          realworld.article.comments_count,
+          page.comments_updated_at,
+          (
+              SELECT max(realworld.user.updated_at)
+              FROM realworld.user
+              WHERE realworld.user.id = ANY(page.authors)
+          ) AS authors_updated_at,
+          array_to_string(page.authors, ',') AS authors
+      FROM realworld.article
+      CROSS JOIN LATERAL (
+          SELECT max(updated_at) AS comments_updated_at, array_agg(DISTINCT user_id) AS authors
+          FROM (
+              SELECT updated_at, user_id
+              FROM realworld.comment
+              WHERE article_id = realworld.article.id%s
+              ORDER BY created_at, id
+              LIMIT ?
+          ) comments
+      ) page
+      WHERE realworld.article.id = ?
+      """;
+
+  /**
+   * One comment JSON per row in (created_at, id) order, open for the keyset condition. Bound to the
+   * ids of the page's authors the viewer follows.
+   */
+  private static final String COMMENTS_SQL =
+      """
+      SELECT
+          jsonb_build_object(
+              'id', realworld.comment.id,
+              'createdAt', realworld.comment.created_at,
+              'updatedAt', realworld.comment.updated_at,
+              'body', realworld.comment.body,
+              'author', (
+                  SELECT jsonb_build_object(
+                      'username', realworld.user.username,
+                      'bio', realworld.user.bio,
+                      'image', realworld.user.image,
+                      'following', realworld.user.id = ANY(?::uuid[])
+                  )
+                  FROM realworld.user
+                  WHERE realworld.user.id = realworld.comment.user_id
+              )
+          ) AS comment,
+          realworld.comment.created_at,
+          realworld.comment.id
+      FROM realworld.comment
+      WHERE realworld.comment.article_id = ?%s
+      ORDER BY realworld.comment.created_at, realworld.comment.id
+      LIMIT ?
+      """;
+
+  private static final String COMMENTS_KEYSET_CONDITION =
+      "\n        AND (realworld.comment.created_at, realworld.comment.id) > (?, ?)";
+
+  static final String COMMENTS_FIRST_VERSION_SQL = COMMENTS_VERSION_SQL.formatted("");
+  static final String COMMENTS_NEXT_VERSION_SQL =
+      COMMENTS_VERSION_SQL.formatted(COMMENTS_KEYSET_CONDITION);
+  static final String COMMENTS_FIRST_PAGE_SQL = COMMENTS_SQL.formatted("");
+  static final String COMMENTS_NEXT_PAGE_SQL = COMMENTS_SQL.formatted(COMMENTS_KEYSET_CONDITION);
+
+  /**
+   * Delete the viewer's article, matching the slug too so a stale cached id never deletes an
+   * article that was renamed meanwhile. Returns whether the slug matched and the rows deleted.
+   */
+  static final String DELETE_ARTICLE_SQL =
+      """
+      WITH
+          target AS (
+              SELECT id, user_id
+              FROM realworld.article
+              WHERE id = ? AND slug = ?
+          ),
+          deleted AS (
+              DELETE FROM realworld.article
+              WHERE id IN (SELECT id FROM target WHERE user_id = ?)
+              RETURNING id
+          )
+      SELECT
+          (SELECT count(*) FROM target) AS matched,
+          (SELECT count(*) FROM deleted) AS deleted
+      """;
+
+  /**
+   * Insert the comment and bump the article's comments_count, 0 rows when the article is gone or
+   * no longer has the slug.
+   */
+  static final String ADD_COMMENT_SQL =
+      """
+      WITH inserted AS (
+        INSERT INTO realworld.comment(id, article_id, user_id, body)
+        SELECT ?, id, ?, ?
+        FROM realworld.article
+        WHERE id = ? AND slug = ?
+        RETURNING article_id
+      )
+      UPDATE realworld.article
+      SET comments_count = comments_count + 1
+      WHERE id IN (SELECT article_id FROM inserted)
+      """;
+
+  static final String COMMENT_SQL =
+      """
+      SELECT
+          jsonb_build_object(
+              'comment', (
+                  SELECT jsonb_build_object(
+                      'id', realworld.comment.id,
+                      'createdAt', realworld.comment.created_at,
+                      'updatedAt', realworld.comment.updated_at,
+                      'body', realworld.comment.body,
+                      'author', (
+                          SELECT jsonb_build_object(
+                              'username', realworld.user.username,
+                              'bio', realworld.user.bio,
+                              'image', realworld.user.image,
+                              'following', ?::boolean
+                          )
+                          FROM realworld.user
+                          WHERE realworld.user.id = realworld.comment.user_id
+                      )
+                  )
+                  FROM realworld.comment
+                  WHERE realworld.comment.id = ?
+              )
+          ) AS comment
+      """;
+
+  /** Delete the viewer's comment and decrement comments_count, 0 rows when nothing matched. */
+  static final String DELETE_COMMENT_SQL =
+      """
+      WITH deleted AS (
+          DELETE FROM realworld.comment
+          WHERE
+              realworld.comment.id = ? AND
+              realworld.comment.user_id = ? AND
+              realworld.comment.article_id = ?
+          RETURNING article_id
+      )
+      UPDATE realworld.article
+      SET comments_count = comments_count - 1
+      WHERE id IN (SELECT article_id FROM deleted)
+      """;
 
   private static final String NO_MATCHING_ARTICLE = "No matching article";
 
   private static final String USER_ID = "userId";
 
+  private static final int MAX_LIMIT = Config.getInt("pagination.maxLimit", 100);
+
+  private final TagDictionary tagDictionary;
+  private final ArticleListQueries listQueries;
+  private final ArticleJsonCache articleCache;
+  private final FeedFanout feedFanout;
+  private final IdLookups idLookups;
+  private final FollowGraph followGraph;
+  private final ArticlePages articlePages;
+  private final FavoriteWrites favoriteWrites;
+
+  ArticleController(
+      TagDictionary tagDictionary,
+      ArticleListQueries listQueries,
+      ArticleJsonCache articleCache,
+      FeedFanout feedFanout,
+      IdLookups idLookups,
+      FollowGraph followGraph,
+      ArticlePages articlePages,
+      FavoriteWrites favoriteWrites) {
+
+    this.tagDictionary = tagDictionary;
+    this.listQueries = listQueries;
+    this.articleCache = articleCache;
+    this.feedFanout = feedFanout;
+    this.idLookups = idLookups;
+    this.followGraph = followGraph;
+    this.articlePages = articlePages;
+    this.favoriteWrites = favoriteWrites;
+  }
+
   @Get("/")
-  String listArticlesHandler(
+  void listArticlesHandler(
       Context ctx,
       String tag,
       String favorited,
       String author,
+      String cursor,
       @Default("20") int limit,
       @Default("0") int offset) {
-    var userId = ctx.attribute(USER_ID);
-
-    var query = new ArrayList<SQLFragment>();
-    query.add(
-        SQLFragment.of(
-            """
-                WITH
-                    articles AS (
-                        SELECT jsonb_build_object(
-                            'slug', realworld.article.slug,
-                            'title', realworld.article.title,
-                            'description', realworld.article.description,
-                            'tagList', array(
-                                SELECT realworld.tag.name
-                                FROM realworld.article_tag
-                                LEFT JOIN realworld.tag ON realworld.tag.id = realworld.article_tag.tag_id
-                                WHERE realworld.article_tag.article_id = realworld.article.id
-                                ORDER BY realworld.tag.name
-                            ),
-                            'createdAt', realworld.article.created_at,
-                            'updatedAt', realworld.article.updated_at,
-                            'favorited', exists(
-                                SELECT id
-                                FROM realworld.favorite
-                                WHERE article_id = realworld.article.id AND user_id = ?
-                            ),
-                            'favoritesCount', (
-                                SELECT count(id)
-                                FROM realworld.favorite
-                                WHERE article_id = realworld.article.id
-                            ),
-                            'author', (
-                                SELECT jsonb_build_object(
-                                    'username', realworld.user.username,
-                                    'bio', realworld.user.bio,
-                                    'image', realworld.user.image,
-                                    'following', exists(
-                                        SELECT id
-                                        FROM realworld.follow
-                                        WHERE from_user_id = ? AND to_user_id = realworld.user.id
-                                    )
-                                )
-                                FROM realworld.user
-                                WHERE realworld.user.id = realworld.article.user_id
-                            )
-                        )
-                        FROM realworld.article
-
-                """,
-            List.of(userId, userId)));
+    UUID userId = ctx.attribute(USER_ID);
+    checkPage(limit, offset);
+    var keyset = cursor == null ? null : ArticleCursor.decode(cursor);
+
+    UUID tagId = null;
+    if (tag != null) {
+      tagId = tagDictionary.id(tag);
+      if (tagId == null) {
+        JsonBody.write(ctx, EMPTY_PAGE);
+        return;
+      }
+    }
+    UUID favoritedId = null;
+    if (favorited != null) {
+      favoritedId = idLookups.userId(favorited);
+      if (favoritedId == null) {
+        JsonBody.write(ctx, EMPTY_PAGE);
+        return;
+      }
+    }
+    UUID authorId = null;
+    if (author != null) {
+      authorId = idLookups.userId(author);
+      if (authorId == null) {
+        JsonBody.write(ctx, EMPTY_PAGE);
+        return;
+      }
+    }
 
-    if (tag != null)
-      query.add(
-          SQLFragment.of(
-              """
-                      WHERE EXISTS(
-                                    SELECT id
-                                    FROM realworld.article_tag
-                                    WHERE realworld.article_tag.article_id = realworld.article.id
-                                        AND ? = (
-                                            SELECT name
-                                            FROM realworld.tag
-                                            WHERE realworld.tag.id = realworld.article_tag.tag_id
-                                        )
-                                )
-                    """,
-              List.of(tag)));
-
-    if (favorited != null)
-      query.add(
-          SQLFragment.of(
-              """
-                                WHERE exists(
-                                    SELECT id
-                                    FROM realworld.favorite
-                                    WHERE article_id = realworld.article.id AND user_id = (
-                                        SELECT id
-                                        FROM realworld.user
-                                        WHERE username = ?
-                                    )
-                                )
-                    """,
-              List.of(favorited)));
-
-    if (author != null)
-      query.add(
-          SQLFragment.of(
-              """
-                                WHERE realworld.article.user_id IN (
-                                    SELECT id
-                                    FROM realworld.user
-                                    WHERE realworld.user.username = ?
-                                )
-                    """,
-              List.of(author)));
-    query.add(
-        SQLFragment.of(
-            """
-                        ORDER BY realworld.article.created_at DESC
-                """));
-    query.add(SQLFragment.of(" LIMIT ? ", List.of(limit)));
-    query.add(SQLFragment.of(" OFFSET ? ", List.of(offset)));
-    query.add(
-        SQLFragment.of(
-            """
-                    )
-                SELECT jsonb_build_object(
-                    'articles', array(
-                        SELECT * FROM articles
-                    ),
-                    'articlesCount', (
-                        SELECT count(*) FROM articles
-                    )
-                ) AS articles
-                """));
-    var joined = SQLFragment.join("", query);
-
-    var sqlQuery = DB.sqlQuery(joined.sql());
-    joined.parameters().forEach(sqlQuery::setParameter);
-
-    return sqlQuery.findOneOrEmpty().orElseThrow().get("articles").toString();
+    JsonBody.write(
+        ctx, listQueries.articles(userId, tagId, favoritedId, authorId, keyset, limit, offset));
   }
 
   @Get("/feed")
-  String feedArticlesHandler(Context ctx, @Default("20") int limit, @Default("0") int offset) {
+  void feedArticlesHandler(
+      Context ctx, String cursor, @Default("20") int limit, @Default("0") int offset) {
+
+    UUID userId = ctx.attribute(USER_ID);
+    checkPage(limit, offset);
+    var keyset = cursor == null ? null : ArticleCursor.decode(cursor);
+    var sql = feedQuery(userId, keyset, limit, offset);
+    var sqlQuery = DB.sqlQuery(sql.sql());
+    sql.parameters().forEach(sqlQuery::setParameter);
 
-    var userId = ctx.attribute(USER_ID);
+    JsonBody.write(ctx, articlePages.render(userId, sqlQuery, limit, ArticlePages.CREATED_AT));
+  }
+
+  /**
+   * The feed statement, a range scan of the user's feed_entry timeline joined to the articles. The
+   * timeline rows carry the article's created_at so the keyset cursor applies to them unchanged.
+   */
+  static SQLFragment feedQuery(Object userId, ArticleCursor keyset, int limit, int offset) {
     var query = new ArrayList<SQLFragment>();
     query.add(
         SQLFragment.of(
-            """
-                WITH
-                    articles AS (
-                        SELECT jsonb_build_object(
-                            'slug', realworld.article.slug,
-                            'title', realworld.article.title,
-                            'description', realworld.article.description,
-                            'tagList', array(
-                                SELECT realworld.tag.name
-                                FROM realworld.article_tag
-                                LEFT JOIN realworld.tag ON realworld.tag.id = realworld.article_tag.tag_id
-                                WHERE realworld.article_tag.article_id = realworld.article.id
-                                ORDER BY realworld.tag.name
-                            ),
-                            'createdAt', realworld.article.created_at,
-                            'updatedAt', realworld.article.updated_at,
-                            'favorited', exists(
-                                SELECT id
-                                FROM realworld.favorite
-                                WHERE article_id = realworld.article.id AND user_id = ?
-                            ),
-                            'favoritesCount', (
-                                SELECT count(id)
-                                FROM realworld.favorite
-                                WHERE article_id = realworld.article.id
-                            ),
-                            'author', (
-                                SELECT jsonb_build_object(
-                                    'username', realworld.user.username,
-                                    'bio', realworld.user.bio,
-                                    'image', realworld.user.image,
-                                    'following', exists(
-                                        SELECT id
-                                        FROM realworld.follow
-                                        WHERE from_user_id = ? AND to_user_id = realworld.user.id
-                                    )
-                                )
-                                FROM realworld.user
-                                WHERE realworld.user.id = realworld.article.user_id
-                            )
-                        )
-                        FROM realworld.article
-                         WHERE user_id IN (
-                            SELECT from_user_id
-                            FROM realworld.follow
-                            WHERE from_user_id = ? AND to_user_id = (
-                                SELECT id
-                                FROM realworld.user
-                                WHERE realworld.user.id = realworld.article.user_id
-                            )
-                        )
-                        ORDER BY realworld.article.created_at DESC
+            ArticleListQueries.ARTICLE_ROWS_SQL
+                + """
+                  JOIN realworld.feed_entry
+                      ON realworld.feed_entry.article_id = realworld.article.id
+                  WHERE realworld.feed_entry.user_id = ?
                 """,
-            List.of(userId, userId, userId)));
+            List.of(userId)));
 
+    if (keyset != null)
+      query.add(
+          SQLFragment.of(
+              " AND " + FEED_KEYSET_CONDITION, List.of(keyset.createdAtParam(), keyset.id())));
+
+    query.add(SQLFragment.of(FEED_ORDER_SQL));
     query.add(SQLFragment.of(" LIMIT ? ", List.of(limit)));
-    query.add(SQLFragment.of(" OFFSET ? ", List.of(offset)));
+    if (keyset == null) query.add(SQLFragment.of(" OFFSET ? ", List.of(offset)));
 
-    query.add(
-        SQLFragment.of(
-            """
-                    )
-                SELECT jsonb_build_object(
-                    'articles', array(
-                        SELECT * FROM articles
-                    ),
-                    'articlesCount', (
-                        SELECT count(*) FROM articles
-                    )
-                ) AS articles
-                """));
-
-    var sql = SQLFragment.join("", query);
+    return SQLFragment.join("", query);
+  }
+
+  @Get("/search")
+  void searchArticlesHandler(Context ctx, String q, String cursor, @Default("20") int limit) {
+    if (q == null || q.isBlank()) {
+      throw new IllegalArgumentException("q shouldn't be blank");
+    }
+    checkPage(limit, 0);
+
+    UUID userId = ctx.attribute(USER_ID);
+    var keyset = cursor == null ? null : SearchCursor.decode(cursor);
+    var sql = searchQuery(q, keyset, limit);
     var sqlQuery = DB.sqlQuery(sql.sql());
     sql.parameters().forEach(sqlQuery::setParameter);
 
-    return sqlQuery.findOneOrEmpty().orElseThrow().get("articles").toString();
+    JsonBody.write(ctx, articlePages.render(userId, sqlQuery, limit, ArticlePages.RANK));
+  }
+
+  /** The search statement, matches of the websearch syntax query by descending ts_rank. */
+  static SQLFragment searchQuery(String q, SearchCursor keyset, int limit) {
+    var params = new ArrayList<>();
+    params.add(q);
+    if (keyset != null) {
+      params.add(keyset.rank());
+      params.add(keyset.id());
+    }
+    params.add(limit);
+    return SQLFragment.of(keyset == null ? SEARCH_FIRST_PAGE_SQL : SEARCH_NEXT_PAGE_SQL, params);
   }
 
   @Get("/{slug}")
   String getArticleHandler(Context ctx, String slug) {
-    var userId = ctx.attribute(USER_ID);
-    return DB.sqlQuery(
-            """
-        SELECT
-            jsonb_build_object(
-                'article', jsonb_build_object(
-                    'slug', realworld.article.slug,
-                    'title', realworld.article.title,
-                    'description', realworld.article.description,
-                    'body', realworld.article.body,
-                    'tagList', array(
-                        SELECT realworld.tag.name
-                        FROM realworld.article_tag
-                        LEFT JOIN realworld.tag ON realworld.tag.id = realworld.article_tag.tag_id
-                        WHERE realworld.article_tag.article_id = realworld.article.id
-                        ORDER BY realworld.tag.name
-                    ),
-                    'createdAt', realworld.article.created_at,
-                    'updatedAt', realworld.article.updated_at,
-                    'favorited', exists(
-                        SELECT id
-                        FROM realworld.favorite
-                        WHERE article_id = realworld.article.id AND user_id = ?
-                    ),
-                    'favoritesCount', (
-                        SELECT count(id)
-                        FROM realworld.favorite
-                        WHERE article_id = realworld.article.id
-                    ),
-                    'author', (
-                        SELECT jsonb_build_object(
-                            'username', realworld.user.username,
-                            'bio', realworld.user.bio,
-                            'image', realworld.user.image,
-                            'following', exists(
-                                SELECT id
-                                FROM realworld.follow
-                                WHERE from_user_id = ? AND to_user_id = realworld.user.id
-                            )
-                        )
-                        FROM realworld.user
-                        WHERE realworld.user.id = realworld.article.user_id
-                )
-            )) AS article
-        FROM realworld.article
-         WHERE slug = ?
-        """)
-        .setParameters(userId, userId, slug)
-        .findOneOrEmpty()
-        .orElseThrow(() -> new HttpResponseException(404, new AppError(NO_MATCHING_ARTICLE)))
-        .get(ARTICLE)
-        .toString();
+    UUID userId = ctx.attribute(USER_ID);
+    var view = articleCache.view(userId, findArticle(slug)).orElseThrow(() -> noMatch(slug));
+
+    ETags.check(ctx, userId, view.etag());
+    return articleCache.render(view).orElseThrow(() -> noMatch(slug));
   }
 
   String articleSlug(String title) {
@@ -366,7 +485,7 @@ public class ArticleController {
 
   @Post("/")
   String createArticleHandler(Context ctx, CreateArticleRequest req) {
-    var userId = ctx.attribute(USER_ID);
+    UUID userId = ctx.attribute(USER_ID);
 
     if (!(req
         instanceof
@@ -379,112 +498,32 @@ public class ArticleController {
       throw new IllegalArgumentException("body shouldn't be null");
     }
 
-    try (var txn = DB.beginTransaction()) {
-
-      txn.setBatchMode(true);
-
-      var articleId = UUID.randomUUID();
-
-      DB.sqlUpdate(
-              """
-          INSERT INTO realworld.article(id, user_id, title, slug, description, body)
-          VALUES (?, ?, ?, ?, ?, ?)
-          """)
-          .setParameters(articleId, userId, title, articleSlug(title), description, body)
-          .execute();
-
-      var tagIds = new ArrayList<UUID>();
-
-      var tagList = tagListOp.orElse(List.of());
-      for (var tag : tagList) {
-
-        UUID id =
-            DB.sqlQuery(
-                    """
-                            INSERT INTO realworld.tag(name)
-                            VALUES (?)
-                            ON CONFLICT (name) DO UPDATE SET name = EXCLUDED.name
-                            RETURNING id
-                            """)
-                .setParameter(tag)
-                .mapToScalar(UUID.class)
-                .findOne();
-        tagIds.add(id);
-      }
-
-      var articleTageQuery =
-          DB.sqlUpdate(
-              """
-                    INSERT INTO realworld.article_tag(article_id, tag_id)
-                    VALUES (?, ?)
-                    """);
-      for (var tagId : tagIds) {
-        articleTageQuery.setParameter(1, articleId);
-        articleTageQuery.setParameter(2, tagId);
-        articleTageQuery.addBatch();
-      }
+    var tagIds = tagDictionary.resolve(tagListOp.orElse(List.of()));
+
+    var created =
+        DB.sqlQuery(CREATE_ARTICLE_SQL)
+            .setParameters(UUID.randomUUID(), userId, title, articleSlug(title), description, body)
+            .setArrayParameter(7, tagIds)
+            .setParameter(8, FeedFanout.SYNC_MAX_FOLLOWERS)
+            .setParameter(9, userId)
+            .setParameter(10, FeedFanout.SYNC_MAX_FOLLOWERS + 1)
+            .setArrayParameter(11, tagIds)
+            .setParameter(12, userId)
+            .findOneOrEmpty()
+            .orElseThrow();
 
-      txn.commitAndContinue();
-
-      return DB.sqlQuery(
-              """
-                    SELECT
-                        jsonb_build_object(
-                            'article', jsonb_build_object(
-                                'slug', realworld.article.slug,
-                                'title', realworld.article.title,
-                                'description', realworld.article.description,
-                                'body', realworld.article.body,
-                                'tagList', array(
-                                    SELECT realworld.tag.name
-                                    FROM realworld.article_tag
-                                    LEFT JOIN realworld.tag ON realworld.tag.id = realworld.article_tag.tag_id
-                                    WHERE realworld.article_tag.article_id = realworld.article.id
-                                    ORDER BY realworld.tag.name
-                                ),
-                                'createdAt', realworld.article.created_at,
-                                'updatedAt', realworld.article.updated_at,
-                                'favorited', exists(
-                                    SELECT id
-                                    FROM realworld.favorite
-                                    WHERE article_id = realworld.article.id AND user_id = ?
-                                ),
-                                'favoritesCount', (
-                                    SELECT count(id)
-                                    FROM realworld.favorite
-                                    WHERE article_id = realworld.article.id
-                                ),
-                                'author', (
-                                    SELECT jsonb_build_object(
-                                        'username', realworld.user.username,
-                                        'bio', realworld.user.bio,
-                                        'image', realworld.user.image,
-                                        'following', exists(
-                                            SELECT id
-                                            FROM realworld.follow
-                                            WHERE from_user_id = ? AND to_user_id = realworld.user.id
-                                        )
-                                    )
-                                    FROM realworld.user
-                                    WHERE realworld.user.id = article.user_id
-                            )
-                        )) AS article
-                    FROM realworld.article
-                     WHERE id = ?
-                    """)
-          .setParameters(userId, userId, articleId)
-          .findOneOrEmpty()
-          .orElseThrow()
-          .get(ARTICLE)
-          .toString();
+    if (created.getBoolean("many_followers")) {
+      feedFanout.fanOut(userId, created.getUUID("id"), created.getTimestamp("created_at"));
     }
+    return created.get(ARTICLE).toString();
   }
 
   @Put("/{slug}")
   String updateArticleHandler(Context ctx, String slug, UpdateArticleRequest req) {
-    var userId = ctx.attribute(USER_ID);
+    UUID userId = ctx.attribute(USER_ID);
+    var articleId = findArticle(slug);
 
-    UUID articleId = null;
+    UUID updated = null;
     if (req.anyUpdates()
         && req
             instanceof
@@ -496,7 +535,7 @@ public class ArticleController {
       var sets = new ArrayList<SQLFragment>();
 
       title.ifPresent(
-          t -> sets.add(SQLFragment.of("title = ?, slug = ?", List.of(title, articleSlug(t)))));
+          t -> sets.add(SQLFragment.of("title = ?, slug = ?", List.of(t, articleSlug(t)))));
 
       description.ifPresent(d -> sets.add(SQLFragment.of("description = ?", List.of(d))));
 
@@ -514,106 +553,64 @@ public class ArticleController {
                   SQLFragment.of(
                       """
 
-                        WHERE slug = ?
+                        WHERE id = ? AND slug = ?
                         RETURNING id
                         """,
-                      List.of(slug)));
+                      List.of(articleId, slug)));
 
       var sqlQuery = DB.sqlQuery(sql.sql());
       sql.parameters().forEach(sqlQuery::setParameter);
-      articleId = sqlQuery.mapToScalar(UUID.class).findOne();
+      updated = sqlQuery.mapToScalar(UUID.class).findOne();
+      if (title.isPresent()) {
+        idLookups.evictSlug(slug);
+      }
     }
 
-    if (articleId == null) {
-      throw new HttpResponseException(404, new AppError(NO_MATCHING_ARTICLE));
+    if (updated == null) {
+      throw noMatch(slug);
     }
-    return getArticle(userId, articleId);
+    articleCache.evict(articleId);
+    return getArticle(userId, slug, articleId);
   }
 
-  private String getArticle(Object userId, UUID articleId) {
+  private String getArticle(UUID userId, String slug, UUID articleId) {
 
-    return DB.sqlQuery(ARTICLE_SQL)
-        .setParameters(userId, userId, articleId)
-        .findOneOrEmpty()
-        .orElseThrow()
-        .get(ARTICLE)
-        .toString();
+    return articleCache.byId(userId, articleId).orElseThrow(() -> noMatch(slug));
   }
 
   @Delete("/{slug}")
   void deleteArticleHandler(Context ctx, String slug) {
-    var userId = ctx.attribute(USER_ID);
+    UUID userId = ctx.attribute(USER_ID);
+    var articleId = findArticle(slug);
 
     var result =
-        DB.sqlUpdate(
-                """
-        DELETE FROM realworld.article
-        WHERE user_id = ? AND slug = ?
-        """)
-            .setParameters(userId, slug)
-            .execute();
-    if (result == 0) {
+        DB.sqlQuery(DELETE_ARTICLE_SQL).setParameters(articleId, slug, userId).findOne();
+    if (result.getLong("matched") == 0) {
+      throw noMatch(slug);
+    }
+    if (result.getLong("deleted") == 0) {
       throw new HttpResponseException(500, new AppError("could not delete article"));
     }
+    idLookups.evictSlug(slug);
+    articleCache.evict(articleId);
   }
 
   @Post("/{slug}/comments")
   String addCommentsToArticleHandler(Context ctx, CommentRequest request, String slug) {
     var body = request.comment().body();
-    var userId = ctx.attribute(USER_ID);
-
-    UUID articleId =
-        DB.sqlQuery(
-                """
-                   SELECT id
-                   FROM realworld.article
-                   WHERE slug = ?
-                   """)
-            .setParameter(slug)
-            .mapToScalar(UUID.class)
-            .findOneOrEmpty()
-            .orElseThrow(() -> new HttpResponseException(404, new AppError(NO_MATCHING_ARTICLE)));
+    UUID userId = ctx.attribute(USER_ID);
+    var articleId = findArticle(slug);
 
     var commentId = UUID.randomUUID();
-    DB.sqlUpdate(
-            """
-          INSERT INTO realworld.comment(id, article_id, user_id, body)
-          VALUES (?, ?, ?, ?)
-          """)
-        .setParameters(commentId, articleId, userId, body)
-        .execute();
-
-    return DB.sqlQuery(
-            """
-          SELECT
-              jsonb_build_object(
-                  'comment', (
-                      SELECT jsonb_build_object(
-                          'id', realworld.comment.id,
-                          'createdAt', realworld.comment.created_at,
-                          'updatedAt', realworld.comment.updated_at,
-                          'body', realworld.comment.body,
-                          'author', (
-                              SELECT jsonb_build_object(
-                                  'username', realworld.user.username,
-                                  'bio', realworld.user.bio,
-                                  'image', realworld.user.image,
-                                  'following', exists(
-                                       SELECT id
-                                       FROM realworld.follow
-                                       WHERE from_user_id = ? AND to_user_id = realworld.user.id
-                                   )
-                              )
-                              FROM realworld.user
-                              WHERE realworld.user.id = realworld.comment.user_id
-                          )
-                      )
-                      FROM realworld.comment
-                      WHERE realworld.comment.id = ?
-                  )
-              ) AS comment
-          """)
-        .setParameters(userId, commentId)
+    if (DB.sqlUpdate(ADD_COMMENT_SQL)
+            .setParameters(commentId, userId, body, articleId, slug)
+            .execute()
+        == 0) {
+      throw noMatch(slug);
+    }
+
+    return DB.sqlQuery(COMMENT_SQL)
+        .setParameters(followGraph.following(userId, userId), commentId)
         .findOneOrEmpty()
         .orElseThrow()
         .get("comment")
@@ -621,65 +618,75 @@ public class ArticleController {
   }
 
   @Get("/{slug}/comments")
-  String getCommentsFromArticleHandler(Context ctx, String slug) {
-    var userId = ctx.attribute(USER_ID);
-
-    return DB.sqlQuery(
-            """
-        SELECT
-            jsonb_build_object(
-                'comments', array(
-                    SELECT jsonb_build_object(
-                        'id', realworld.comment.id,
-                        'createdAt', realworld.comment.created_at,
-                        'updatedAt', realworld.comment.updated_at,
-                        'body', realworld.comment.body,
-                        'author', (
-                            SELECT jsonb_build_object(
-                                'username', realworld.user.username,
-                                'bio', realworld.user.bio,
-                                'image', realworld.user.image,
-                                'following', exists(
-                                     SELECT id
-                                     FROM realworld.follow
-                                     WHERE from_user_id = ? AND to_user_id = realworld.user.id
-                                 )
-                            )
-                            FROM realworld.user
-                            WHERE realworld.user.id = realworld.comment.user_id
-                        )
-                    )
-                    FROM realworld.comment
-                    WHERE realworld.comment.article_id = realworld.article.id
-                )
-            ) AS comments
-        FROM realworld.article WHERE realworld.article.slug = ?
-        """)
-        .setParameters(userId, slug)
-        .findOneOrEmpty()
-        .orElseThrow(() -> new HttpResponseException(404, new AppError(NO_MATCHING_ARTICLE)))
-        .get("comments")
-        .toString();
+  void getCommentsFromArticleHandler(
+      Context ctx, String slug, String cursor, @Default("20") int limit) {
+    UUID userId = ctx.attribute(USER_ID);
+    checkPage(limit, 0);
+    var keyset = cursor == null ? null : ArticleCursor.decode(cursor);
+    var articleId = findArticle(slug);
+
+    var versionQuery =
+        DB.sqlQuery(keyset == null ? COMMENTS_FIRST_VERSION_SQL : COMMENTS_NEXT_VERSION_SQL);
+    if (keyset != null) {
+      versionQuery.setParameter(keyset.createdAtParam()).setParameter(keyset.id());
+    }
+    var version =
+        versionQuery
+            .setParameter(limit)
+            .setParameter(articleId)
+            .findOneOrEmpty()
+            .orElseThrow(() -> noMatch(slug));
+    var authors = version.getString("authors");
+    var following =
+        authors == null
+            ? List.<UUID>of()
+            : followGraph.followed(
+                userId, Arrays.stream(authors.split(",")).map(UUID::fromString).toList());
+    ETags.check(
+        ctx,
+        userId,
+        ETags.of(
+            version.getUUID("id"),
+            version.getLong("comments_count"),
+            version.getTimestamp("comments_updated_at"),
+            version.getTimestamp("authors_updated_at"),
+            following.toString()));
+
+    var query =
+        DB.sqlQuery(keyset == null ? COMMENTS_FIRST_PAGE_SQL : COMMENTS_NEXT_PAGE_SQL)
+            .setArrayParameter(1, following)
+            .setParameter(2, articleId);
+    var position = 3;
+    if (keyset != null) {
+      query.setParameter(position++, keyset.createdAtParam());
+      query.setParameter(position++, keyset.id());
+    }
+    query.setParameter(position, limit);
+
+    var rows = new int[1];
+    var last = new ArticleCursor[1];
+    JsonBody.array(
+        ctx,
+        "comments",
+        query,
+        (rs, row) -> {
+          rows[0]++;
+          last[0] =
+              new ArticleCursor(rs.getTimestamp(2).toInstant(), rs.getObject(3, UUID.class));
+        },
+        () ->
+            ", \"commentsCount\": %d, \"nextCursor\": %s"
+                .formatted(
+                    version.getLong("comments_count"),
+                    rows[0] == limit ? '"' + last[0].encode() + '"' : "null"));
   }
 
   @Delete("/{slug}/comments/{commentId}")
   void deleteCommentHandler(Context ctx, String slug, UUID commentId) {
-    var userId = ctx.attribute(USER_ID);
+    UUID userId = ctx.attribute(USER_ID);
+    var articleId = findArticle(slug);
     var result =
-        DB.sqlUpdate(
-                """
-        DELETE FROM realworld.comment
-        WHERE
-            realworld.comment.id = ? AND
-            realworld.comment.user_id = ? AND
-            realworld.comment.article_id IN (
-                SELECT id
-                FROM realworld.article
-                WHERE realworld.article.slug = ?
-            )
-        """)
-            .setParameters(commentId, userId, slug)
-            .execute();
+        DB.sqlUpdate(DELETE_COMMENT_SQL).setParameters(commentId, userId, articleId).execute();
 
     if (result == 0) {
 
@@ -689,47 +696,48 @@ public class ArticleController {
 
   @Post("/{slug}/favorite")
   String favoriteArticleHandler(Context ctx, String slug) {
-    var userId = ctx.attribute(USER_ID);
+    UUID userId = ctx.attribute(USER_ID);
 
     var articleId = findArticle(slug);
 
-    DB.sqlUpdate(
-            """
-    INSERT INTO realworld.favorite(article_id, user_id)
-    VALUES (?, ?)
-    ON CONFLICT
-      DO NOTHING
-    """)
-        .setParameters(articleId, userId)
-        .execute();
-    return getArticle(userId, articleId);
+    if (!favoriteWrites.favorite(userId, articleId, slug)) {
+      throw noMatch(slug);
+    }
+    return getArticle(userId, slug, articleId);
+  }
+
+  /** Reject a page size outside 1 to {@code pagination.maxLimit} or a negative offset. */
+  static void checkPage(int limit, int offset) {
+    if (limit < 1 || limit > MAX_LIMIT) {
+      throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+    }
+    if (offset < 0) {
+      throw new IllegalArgumentException("offset shouldn't be negative");
+    }
   }
 
   private UUID findArticle(String slug) {
-    return DB.sqlQuery(
-            """
-    SELECT id
-    FROM realworld.article
-    WHERE slug = ?
-    """)
-        .setParameter(1, slug)
-        .mapToScalar(UUID.class)
-        .findOneOrEmpty()
-        .orElseThrow(() -> new HttpResponseException(404, new AppError(NO_MATCHING_ARTICLE)));
+    var articleId = idLookups.articleId(slug);
+    if (articleId == null) {
+      throw new HttpResponseException(404, new AppError(NO_MATCHING_ARTICLE));
+    }
+    return articleId;
+  }
+
+  /** The 404 for a slug whose article is gone, dropping the slug's cached id. */
+  private HttpResponseException noMatch(String slug) {
+    idLookups.evictSlug(slug);
+    return new HttpResponseException(404, new AppError(NO_MATCHING_ARTICLE));
   }
 
   @Delete("/{slug}/favorite")
   String unfavoriteArticleHandler(Context ctx, String slug) {
-    var userId = ctx.attribute(USER_ID);
+    UUID userId = ctx.attribute(USER_ID);
     var articleId = findArticle(slug);
-    DB.sqlUpdate(
-            """
-                   DELETE FROM realworld.favorite
-                   WHERE article_id = ? AND user_id = ?
-                   """)
-        .setParameters(articleId, userId)
-        .execute();
-
-    return getArticle(userId, articleId);
+    if (!favoriteWrites.unfavorite(userId, articleId, slug)) {
+      throw noMatch(slug);
+    }
+
+    return getArticle(userId, slug, articleId);
   }
 }
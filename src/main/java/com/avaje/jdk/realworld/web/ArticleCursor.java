@@ -0,0 +1,41 @@
+package com.avaje.jdk.realworld.web;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset pagination cursor, the (created_at, id) of the last article or comment of a page.
+ *
+ * <p>Encoded as base64url of {@code <epoch micros>:<uuid>}.
+ */
+record ArticleCursor(Instant createdAt, UUID id) {
+
+  static ArticleCursor decode(String cursor) {
+    try {
+      var text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      var sep = text.indexOf(':');
+      var micros = Long.parseLong(text.substring(0, sep));
+      var createdAt = Instant.EPOCH.plusNanos(Math.multiplyExact(micros, 1000L));
+      return new ArticleCursor(createdAt, UUID.fromString(text.substring(sep + 1)));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("invalid cursor");
+    }
+  }
+
+  String encode() {
+    var micros = Math.addExact(createdAt.getEpochSecond() * 1_000_000, createdAt.getNano() / 1000);
+    var text = micros + ":" + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** The created_at bound as a value the driver binds as timestamptz. */
+  OffsetDateTime createdAtParam() {
+    return createdAt.atOffset(ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,277 @@
+package com.avaje.jdk.realworld.web;
+
+import com.avaje.jdk.realworld.web.service.FollowGraph;
+import io.avaje.config.Config;
+import io.ebean.DB;
+import io.ebean.SqlRow;
+import jakarta.inject.Singleton;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache of the viewer independent part of the single article JSON, keyed by article id and
+ * validated against the article and author updated_at.
+ *
+ * <p>Each read runs one cheap query for the versions, the favorites count and the viewer's
+ * favorited flag, takes the following flag from the {@link FollowGraph} and any favorite change of
+ * the viewer still queued in {@link FavoriteWrites}, and merges those into the cached JSON. Entries
+ * are evicted least recently used once the cached JSON exceeds {@code cache.article.maxBytes}.
+ */
+@Singleton
+public final class ArticleJsonCache {
+
+  private static final long MAX_BYTES =
+      Config.getLong("cache.article.maxBytes", 32L * 1024 * 1024);
+
+  static final String VIEWER_SQL =
+      """
+      SELECT
+          realworld.article.id,
+          realworld.article.user_id,
+          realworld.article.updated_at,
+          realworld.user.updated_at AS author_updated_at,
+          realworld.article.favorites_count,
+          exists(
+              SELECT id
+              FROM realworld.favorite
+              WHERE article_id = realworld.article.id AND user_id = ?
+          ) AS favorited
+      FROM realworld.article
+      JOIN realworld.user ON realworld.user.id = realworld.article.user_id
+      """;
+
+  static final String SHARED_SQL =
+      """
+      SELECT
+          jsonb_build_object(
+              'slug', realworld.article.slug,
+              'title', realworld.article.title,
+              'description', realworld.article.description,
+              'body', realworld.article.body,
+              'tagList', array(
+                  SELECT realworld.tag.name
+                  FROM realworld.article_tag
+                  LEFT JOIN realworld.tag ON realworld.tag.id = realworld.article_tag.tag_id
+                  WHERE realworld.article_tag.article_id = realworld.article.id
+                  ORDER BY realworld.tag.name
+              ),
+              'createdAt', realworld.article.created_at,
+              'updatedAt', realworld.article.updated_at
+          )::text AS article,
+          jsonb_build_object(
+              'username', realworld.user.username,
+              'bio', realworld.user.bio,
+              'image', realworld.user.image
+          )::text AS author,
+          realworld.article.updated_at,
+          realworld.user.updated_at AS author_updated_at
+      FROM realworld.article
+      JOIN realworld.user ON realworld.user.id = realworld.article.user_id
+      WHERE realworld.article.id = ?
+      """;
+
+  private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+  private final ReentrantLock lock = new ReentrantLock();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private long bytes;
+
+  private final FollowGraph followGraph;
+  private final FavoriteWrites favoriteWrites;
+
+  ArticleJsonCache(FollowGraph followGraph, FavoriteWrites favoriteWrites) {
+    this.followGraph = followGraph;
+    this.favoriteWrites = favoriteWrites;
+  }
+
+  /**
+   * The cached JSON objects with their closing brace removed so the viewer fields can be appended.
+   */
+  record Entry(
+      Timestamp updatedAt, Timestamp authorUpdatedAt, String article, String author) {
+
+    long size() {
+      return article.length() + author.length();
+    }
+
+    boolean matches(SqlRow viewer) {
+      return updatedAt.equals(viewer.getTimestamp("updated_at"))
+          && authorUpdatedAt.equals(viewer.getTimestamp("author_updated_at"));
+    }
+
+    String render(ArticleView view) {
+      return new StringBuilder(article.length() + author.length() + 96)
+          .append("{\"article\": ")
+          .append(article)
+          .append(", \"favorited\": ")
+          .append(view.favorited())
+          .append(", \"favoritesCount\": ")
+          .append(view.favoritesCount())
+          .append(", \"author\": ")
+          .append(author)
+          .append(", \"following\": ")
+          .append(view.following())
+          .append("}}}")
+          .toString();
+    }
+  }
+
+  /** Versions and viewer state of an article, enough to answer a conditional request. */
+  record ArticleView(SqlRow row, boolean following, boolean favorited, int favoritesCount) {
+
+    /** The viewer state of the row, with the viewer's queued favorite change applied. */
+    ArticleView(SqlRow row, boolean following, Boolean pendingFavorite) {
+      this(
+          row,
+          following,
+          pendingFavorite != null ? pendingFavorite : row.getBoolean("favorited"),
+          row.getInteger("favorites_count")
+              + (pendingFavorite == null || pendingFavorite == row.getBoolean("favorited")
+                  ? 0
+                  : pendingFavorite ? 1 : -1));
+    }
+
+    String etag() {
+      return ETags.of(
+          row.getUUID("id"),
+          row.getTimestamp("updated_at").toInstant(),
+          row.getTimestamp("author_updated_at").toInstant(),
+          favoritesCount,
+          favorited,
+          following);
+    }
+  }
+
+  /** Look up the versions and viewer state of the article with the given id. */
+  Optional<ArticleView> view(UUID userId, UUID articleId) {
+    return Optional.ofNullable(
+            DB.sqlQuery(VIEWER_SQL + "WHERE realworld.article.id = ?")
+                .setParameters(userId, articleId)
+                .findOne())
+        .map(
+            row ->
+                new ArticleView(
+                    row,
+                    followGraph.following(userId, row.getUUID("user_id")),
+                    favoriteWrites.pending(userId, articleId)));
+  }
+
+  /** Render the article with the given id for the viewer. */
+  Optional<String> byId(UUID userId, UUID articleId) {
+    return view(userId, articleId).flatMap(this::render);
+  }
+
+  /** Render the article, merging the viewer state into the cached JSON. */
+  Optional<String> render(ArticleView view) {
+    var viewer = view.row();
+    var articleId = viewer.getUUID("id");
+    var entry = get(articleId, viewer);
+    if (entry == null) {
+      entry = load(articleId);
+      if (entry == null) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(entry.render(view));
+  }
+
+  private Entry get(UUID articleId, SqlRow viewer) {
+    lock.lock();
+    try {
+      var entry = entries.get(articleId);
+      if (entry != null && entry.matches(viewer)) {
+        hits.increment();
+        return entry;
+      }
+      misses.increment();
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Entry load(UUID articleId) {
+    var row = DB.sqlQuery(SHARED_SQL).setParameter(articleId).findOne();
+    if (row == null) {
+      return null;
+    }
+    var article = row.getString("article");
+    var author = row.getString("author");
+    var entry =
+        new Entry(
+            row.getTimestamp("updated_at"),
+            row.getTimestamp("author_updated_at"),
+            article.substring(0, article.length() - 1),
+            author.substring(0, author.length() - 1));
+    put(articleId, entry);
+    return entry;
+  }
+
+  private void put(UUID articleId, Entry entry) {
+    lock.lock();
+    try {
+      var previous = entries.put(articleId, entry);
+      if (previous != null) {
+        bytes -= previous.size();
+      }
+      bytes += entry.size();
+      var eldest = entries.values().iterator();
+      while (bytes > MAX_BYTES && eldest.hasNext()) {
+        bytes -= eldest.next().size();
+        eldest.remove();
+        evictions.increment();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Drop the cached article, used when it's updated or deleted. */
+  void evict(UUID articleId) {
+    lock.lock();
+    try {
+      var previous = entries.remove(articleId);
+      if (previous != null) {
+        bytes -= previous.size();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Approximate footprint of the cached JSON, one byte per character as in Latin-1 strings. */
+  public long bytes() {
+    lock.lock();
+    try {
+      return bytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.avaje.jdk.realworld.web;
+
+import io.ebean.DB;
+import jakarta.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The article list statements, one SQL string per combination of the tag, favorited and author
+ * filters, each in an offset and a keyset paged form, composed once at startup.
+ *
+ * <p>Filters are AND composed semi-joins on ids, the tag name and usernames are resolved by the
+ * caller, so the article, favorite and article_tag indexes are probed with plain ids. Every
+ * combination has the same shape: Postgres plans IN and EXISTS subqueries as the same semi-join
+ * and picks the join order from the statistics, so the most selective filter drives the plan
+ * without a per combination rewrite. QueryPlanTest checks which index each combination uses.
+ */
+@Singleton
+public final class ArticleListQueries {
+
+  static final int TAG = 1;
+  static final int FAVORITED = 2;
+  static final int AUTHOR = 4;
+  static final int VARIANTS = 8;
+
+  /** The page's rows, open for a WHERE clause. */
+  static final String ARTICLE_ROWS_SQL =
+      """
+      SELECT
+      %s,
+      realworld.article.created_at
+      FROM realworld.article
+      """
+          .formatted(ArticlePages.COLUMNS_SQL);
+
+  static final String KEYSET_CONDITION =
+      "(realworld.article.created_at, realworld.article.id) < (?, ?)";
+
+  static final String ORDER_SQL =
+      """
+      ORDER BY realworld.article.created_at DESC, realworld.article.id DESC
+      """;
+
+  private static final String TAG_CONDITION =
+      """
+      realworld.article.id IN (
+          SELECT article_id
+          FROM realworld.article_tag
+          WHERE tag_id = ?
+      )""";
+
+  private static final String FAVORITED_CONDITION =
+      """
+      realworld.article.id IN (
+          SELECT article_id
+          FROM realworld.favorite
+          WHERE user_id = ?
+      )""";
+
+  private static final String AUTHOR_CONDITION = "realworld.article.user_id = ?";
+
+  private final Variant[] variants = new Variant[VARIANTS];
+  private final ArticlePages pages;
+
+  ArticleListQueries(ArticlePages pages) {
+    this.pages = pages;
+    for (int i = 0; i < VARIANTS; i++) {
+      variants[i] = new Variant(i);
+    }
+  }
+
+  static int variant(boolean tag, boolean favorited, boolean author) {
+    return (tag ? TAG : 0) | (favorited ? FAVORITED : 0) | (author ? AUTHOR : 0);
+  }
+
+  /** Run the matching statement and return the rendered articles page as UTF-8 JSON. */
+  byte[] articles(
+      UUID userId,
+      UUID tagId,
+      UUID favoritedId,
+      UUID authorId,
+      ArticleCursor keyset,
+      int limit,
+      int offset) {
+    var variant = variants[variant(tagId != null, favoritedId != null, authorId != null)];
+    var query = DB.sqlQuery(variant.sql(keyset != null));
+    parameters(tagId, favoritedId, authorId, keyset, limit, offset).forEach(query::setParameter);
+
+    var start = System.nanoTime();
+    try {
+      return pages.render(userId, query, limit, ArticlePages.CREATED_AT);
+    } finally {
+      variant.pages.increment();
+      variant.pageNanos.add(System.nanoTime() - start);
+    }
+  }
+
+  /** Bind values in placeholder order for the variant selected by the non null filters. */
+  static List<Object> parameters(
+      UUID tagId,
+      UUID favoritedId,
+      UUID authorId,
+      ArticleCursor keyset,
+      int limit,
+      int offset) {
+    var params = new ArrayList<>();
+    if (tagId != null) params.add(tagId);
+    if (favoritedId != null) params.add(favoritedId);
+    if (authorId != null) params.add(authorId);
+    if (keyset != null) {
+      params.add(keyset.createdAtParam());
+      params.add(keyset.id());
+    }
+    params.add(limit);
+    if (keyset == null) params.add(offset);
+    return params;
+  }
+
+  String sql(int variant, boolean keyset) {
+    return variants[variant].sql(keyset);
+  }
+
+  /** Per variant page statistics. */
+  public List<Variant> variants() {
+    return List.of(variants);
+  }
+
+  public static final class Variant {
+
+    private final String name;
+    private final String offsetSql;
+    private final String keysetSql;
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder pageNanos = new LongAdder();
+
+    private Variant(int mask) {
+      var names = new ArrayList<String>();
+      var conditions = new ArrayList<String>();
+      if ((mask & TAG) != 0) {
+        names.add("tag");
+        conditions.add(TAG_CONDITION);
+      }
+      if ((mask & FAVORITED) != 0) {
+        names.add("favorited");
+        conditions.add(FAVORITED_CONDITION);
+      }
+      if ((mask & AUTHOR) != 0) {
+        names.add("author");
+        conditions.add(AUTHOR_CONDITION);
+      }
+      this.name = names.isEmpty() ? "all" : String.join("+", names);
+      this.offsetSql = compose(conditions, false);
+      this.keysetSql = compose(conditions, true);
+    }
+
+    private static String compose(List<String> filters, boolean keyset) {
+      var conditions = new ArrayList<>(filters);
+      if (keyset) conditions.add(KEYSET_CONDITION);
+
+      var sql = new StringBuilder(ARTICLE_ROWS_SQL);
+      if (!conditions.isEmpty()) {
+        sql.append("WHERE ").append(String.join("\n  AND ", conditions)).append('\n');
+      }
+      sql.append(ORDER_SQL).append("LIMIT ?\n");
+      if (!keyset) sql.append("OFFSET ?\n");
+      return sql.toString();
+    }
+
+    String sql(boolean keyset) {
+      return keyset ? keysetSql : offsetSql;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    /** Pages served. */
+    public long pages() {
+      return pages.sum();
+    }
+
+    /** Time running the statement and rendering the page, including the viewer state lookups. */
+    public long pageNanos() {
+      return pageNanos.sum();
+    }
+  }
+}
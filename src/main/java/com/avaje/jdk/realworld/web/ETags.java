@@ -0,0 +1,61 @@
+package com.avaje.jdk.realworld.web;
+
+import io.avaje.jex.http.Context;
+import io.avaje.jex.http.HttpResponseException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/** Strong ETags and conditional GET handling for the polled read endpoints. */
+final class ETags {
+
+  private ETags() {}
+
+  /** Strong ETag over the version parts of a representation. */
+  static String of(Object... parts) {
+    var sb = new StringBuilder();
+    for (var part : parts) {
+      sb.append(part).append(':');
+    }
+    try {
+      var digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+      return '"' + HexFormat.of().formatHex(digest, 0, 16) + '"';
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Set the ETag and caching headers and answer 304 when the request's If-None-Match matches, so
+   * the caller skips building the response.
+   */
+  static void check(Context ctx, Object viewer, String etag) {
+    ctx.header("ETag", etag)
+        .header("Cache-Control", viewer == null ? "public, no-cache" : "private, no-cache")
+        .header("Vary", "Authorization");
+
+    if (matches(ctx.header("If-None-Match"), etag)) {
+      throw new HttpResponseException(304, "");
+    }
+  }
+
+  static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (var candidate : ifNoneMatch.split(",")) {
+      var tag = candidate.strip();
+      // If-None-Match uses the weak comparison
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,395 @@
+package com.avaje.jdk.realworld.web;
+
+import io.avaje.config.Config;
+import io.avaje.inject.PostConstruct;
+import io.avaje.inject.PreDestroy;
+import io.ebean.DB;
+import jakarta.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies favorites and unfavorites, directly or, with {@code favorites.writeBehind.enabled}, from
+ * an in-memory queue flushed every {@code favorites.writeBehind.flushMillis}.
+ *
+ * <p>The queue holds the latest requested state per user and article, so a burst of toggles costs
+ * at most one row change. Each flush writes all favorites with one multi-row insert and all
+ * unfavorites with one multi-row delete, both maintaining favorites_count. Single article reads of
+ * the user see the queued state through {@link #pending}, list pages catch up with the flush.
+ *
+ * <p>The article id comes from the cached slug lookup, so a request is only written or queued once
+ * the article still has the requested slug. A slug renamed on another instance answers 404 rather
+ * than changing the renamed article.
+ *
+ * <p>The queue is bounded by {@code favorites.writeBehind.maxPending} pairs, beyond that a request
+ * waits for the running flush and writes directly. Queued changes are lost if the process dies
+ * before a flush, a normal shutdown flushes them.
+ *
+ * <p>A queued change is also lost when its batch fails and the retry of the pair on its own fails
+ * too, for example while the database is unreachable. The client was already answered as if the
+ * change had been made, the loss is only logged at WARN and counted by {@code
+ * realworld_favorite_failures_total}. Leave write-behind disabled where that is not acceptable.
+ */
+@Singleton
+public final class FavoriteWrites {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FavoriteWrites.class);
+
+  private static final boolean WRITE_BEHIND =
+      Config.getBool("favorites.writeBehind.enabled", false);
+  private static final int MAX_PENDING = Config.getInt("favorites.writeBehind.maxPending", 10_000);
+  private static final long FLUSH_MILLIS = Config.getLong("favorites.writeBehind.flushMillis", 5);
+
+  /**
+   * Favorite and bump favorites_count when the article with the id still has the slug, returns 0
+   * when it does not.
+   */
+  static final String FAVORITE_SQL =
+      """
+      WITH
+          target AS (
+              SELECT id
+              FROM realworld.article
+              WHERE id = ? AND slug = ?
+          ),
+          inserted AS (
+              INSERT INTO realworld.favorite(article_id, user_id)
+              SELECT id, ?
+              FROM target
+              ON CONFLICT
+                DO NOTHING
+              RETURNING article_id
+          ),
+          counted AS (
+              UPDATE realworld.article
+              SET favorites_count = favorites_count + 1
+              WHERE id IN (SELECT article_id FROM inserted)
+          )
+      SELECT count(*) FROM target
+      """;
+
+  /** Unfavorite like {@link #FAVORITE_SQL}, returns 0 when the article no longer has the slug. */
+  static final String UNFAVORITE_SQL =
+      """
+      WITH
+          target AS (
+              SELECT id
+              FROM realworld.article
+              WHERE id = ? AND slug = ?
+          ),
+          deleted AS (
+              DELETE FROM realworld.favorite
+              WHERE article_id IN (SELECT id FROM target) AND user_id = ?
+              RETURNING article_id
+          ),
+          counted AS (
+              UPDATE realworld.article
+              SET favorites_count = favorites_count - 1
+              WHERE id IN (SELECT article_id FROM deleted)
+          )
+      SELECT count(*) FROM target
+      """;
+
+  /** Check a cached slug lookup before queueing a change for the article. */
+  static final String SLUG_MATCH_SQL =
+      """
+      SELECT count(*)
+      FROM realworld.article
+      WHERE id = ? AND slug = ?
+      """;
+
+  /**
+   * Favorite the (user id, article id) pairs of the two arrays, skipping those whose user or
+   * article is gone, and return the number of favorites added.
+   */
+  static final String FAVORITE_BATCH_SQL =
+      """
+      WITH
+          batch AS (
+              SELECT user_id, article_id
+              FROM unnest(?::uuid[], ?::uuid[]) AS batch(user_id, article_id)
+          ),
+          inserted AS (
+              INSERT INTO realworld.favorite(article_id, user_id)
+              SELECT article_id, user_id
+              FROM batch
+              WHERE article_id IN (SELECT id FROM realworld.article)
+                AND user_id IN (SELECT id FROM realworld.user)
+              ON CONFLICT
+                DO NOTHING
+              RETURNING article_id
+          ),
+          counted AS (
+              UPDATE realworld.article
+              SET favorites_count = favorites_count + added.count
+              FROM (
+                  SELECT article_id, count(*) AS count FROM inserted GROUP BY article_id
+              ) added
+              WHERE realworld.article.id = added.article_id
+          )
+      SELECT count(*) FROM inserted
+      """;
+
+  /** Unfavorite the (user id, article id) pairs and return the number of favorites removed. */
+  static final String UNFAVORITE_BATCH_SQL =
+      """
+      WITH
+          deleted AS (
+              DELETE FROM realworld.favorite
+              USING unnest(?::uuid[], ?::uuid[]) AS batch(user_id, article_id)
+              WHERE realworld.favorite.user_id = batch.user_id
+                AND realworld.favorite.article_id = batch.article_id
+              RETURNING realworld.favorite.article_id
+          ),
+          counted AS (
+              UPDATE realworld.article
+              SET favorites_count = favorites_count - removed.count
+              FROM (
+                  SELECT article_id, count(*) AS count FROM deleted GROUP BY article_id
+              ) removed
+              WHERE realworld.article.id = removed.article_id
+          )
+      SELECT count(*) FROM deleted
+      """;
+
+  record Key(UUID userId, UUID articleId) {}
+
+  private final Map<Key, Boolean> queued = new ConcurrentHashMap<>();
+
+  /** The batch being written, still reported by {@link #pending} until it is committed. */
+  private volatile Map<Key, Boolean> flushing = Map.of();
+
+  /** Held while a batch is written, so direct writes never overtake a queued older state. */
+  private final ReentrantLock flushLock = new ReentrantLock();
+
+  private final LongAdder enqueued = new LongAdder();
+  /** Writes made directly because the queue was full. */
+  private final LongAdder direct = new LongAdder();
+  private final LongAdder flushes = new LongAdder();
+  private final LongAdder flushed = new LongAdder();
+  private final LongAdder flushNanos = new LongAdder();
+  private final AtomicLong maxFlushNanos = new AtomicLong();
+  private final LongAdder failures = new LongAdder();
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().daemon().name("favorite-writes").factory());
+
+  @PostConstruct
+  void start() {
+    if (WRITE_BEHIND) {
+      executor.scheduleWithFixedDelay(
+          this::scheduledFlush, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  void stop() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!queued.isEmpty()) {
+      LOG.info("Flushing {} queued favorite changes", queued.size());
+      flush();
+    }
+  }
+
+  /** Favorite the article for the user, false when the article no longer has the slug. */
+  public boolean favorite(UUID userId, UUID articleId, String slug) {
+    return write(new Key(userId, articleId), slug, true);
+  }
+
+  /** Remove the user's favorite of the article, false when it no longer has the slug. */
+  public boolean unfavorite(UUID userId, UUID articleId, String slug) {
+    return write(new Key(userId, articleId), slug, false);
+  }
+
+  private boolean write(Key key, String slug, boolean favorite) {
+    if (!WRITE_BEHIND) {
+      return writeOne(key, slug, favorite);
+    }
+    if (!matches(SLUG_MATCH_SQL, key.articleId(), slug)) {
+      return false;
+    }
+    if (enqueue(key, favorite)) {
+      enqueued.increment();
+      return true;
+    }
+    direct.increment();
+    flushLock.lock();
+    try {
+      return writeOne(key, slug, favorite);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /** Queue or replace the pair's state, false when the queue is full. */
+  boolean enqueue(Key key, boolean favorite) {
+    if (queued.size() >= MAX_PENDING) {
+      return queued.replace(key, favorite) != null;
+    }
+    queued.put(key, favorite);
+    return true;
+  }
+
+  /** The queued state of the pair, or null when nothing is waiting to be written. */
+  public Boolean pending(UUID userId, UUID articleId) {
+    if (queued.isEmpty() && flushing.isEmpty()) {
+      return null;
+    }
+    var key = new Key(userId, articleId);
+    var state = queued.get(key);
+    return state != null ? state : flushing.get(key);
+  }
+
+  private void scheduledFlush() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to flush favorite changes", e);
+    }
+  }
+
+  /** Write everything queued so far and return the number of pairs written. */
+  int flush() {
+    if (queued.isEmpty()) {
+      return 0;
+    }
+    flushLock.lock();
+    try {
+      var batch = new ConcurrentHashMap<Key, Boolean>();
+      flushing = batch;
+      var start = System.nanoTime();
+      try {
+        drain(batch);
+        if (batch.isEmpty()) {
+          return 0;
+        }
+        writeBatch(batch);
+      } finally {
+        flushing = Map.of();
+      }
+      var nanos = System.nanoTime() - start;
+      flushes.increment();
+      flushed.add(batch.size());
+      flushNanos.add(nanos);
+      maxFlushNanos.accumulateAndGet(nanos, Math::max);
+      return batch.size();
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Move the queued pairs to the batch, which is already visible to {@link #pending}. A pair
+   * changed meanwhile keeps its newer state queued for the next flush.
+   */
+  void drain(Map<Key, Boolean> batch) {
+    for (var entry : queued.entrySet()) {
+      var key = entry.getKey();
+      var state = entry.getValue();
+      batch.put(key, state);
+      if (!queued.remove(key, state)) {
+        batch.remove(key);
+      }
+    }
+  }
+
+  private void writeBatch(Map<Key, Boolean> batch) {
+    var favoriteUsers = new ArrayList<UUID>();
+    var favoriteArticles = new ArrayList<UUID>();
+    var unfavoriteUsers = new ArrayList<UUID>();
+    var unfavoriteArticles = new ArrayList<UUID>();
+    batch.forEach(
+        (key, favorite) -> {
+          (favorite ? favoriteUsers : unfavoriteUsers).add(key.userId());
+          (favorite ? favoriteArticles : unfavoriteArticles).add(key.articleId());
+        });
+    try {
+      run(FAVORITE_BATCH_SQL, favoriteUsers, favoriteArticles);
+      run(UNFAVORITE_BATCH_SQL, unfavoriteUsers, unfavoriteArticles);
+    } catch (RuntimeException e) {
+      // a user or article deleted meanwhile fails the batch, write it pair by pair instead
+      LOG.debug("Batched favorite write failed, retrying {} pairs one by one", batch.size(), e);
+      batch.forEach(this::writePairLogged);
+    }
+  }
+
+  private static void run(String sql, List<UUID> userIds, List<UUID> articleIds) {
+    if (userIds.isEmpty()) {
+      return;
+    }
+    DB.sqlQuery(sql)
+        .setArrayParameter(1, userIds)
+        .setArrayParameter(2, articleIds)
+        .mapToScalar(Long.class)
+        .findOne();
+  }
+
+  /** Write one pair of a failed batch on its own, the slug was checked when it was queued. */
+  private void writePairLogged(Key key, boolean favorite) {
+    try {
+      var sql = favorite ? FAVORITE_BATCH_SQL : UNFAVORITE_BATCH_SQL;
+      run(sql, List.of(key.userId()), List.of(key.articleId()));
+    } catch (RuntimeException e) {
+      failures.increment();
+      LOG.warn("Failed to write favorite {} of {}", favorite, key, e);
+    }
+  }
+
+  private static boolean writeOne(Key key, String slug, boolean favorite) {
+    var sql = favorite ? FAVORITE_SQL : UNFAVORITE_SQL;
+    return matches(sql, key.articleId(), slug, key.userId());
+  }
+
+  private static boolean matches(String sql, Object... parameters) {
+    return DB.sqlQuery(sql).setParameters(parameters).mapToScalar(Long.class).findOne() > 0;
+  }
+
+  public int queueDepth() {
+    return queued.size();
+  }
+
+  public long enqueued() {
+    return enqueued.sum();
+  }
+
+  public long direct() {
+    return direct.sum();
+  }
+
+  public long flushes() {
+    return flushes.sum();
+  }
+
+  public long flushed() {
+    return flushed.sum();
+  }
+
+  public long flushNanos() {
+    return flushNanos.sum();
+  }
+
+  public long maxFlushNanos() {
+    return maxFlushNanos.get();
+  }
+
+  public long failures() {
+    return failures.sum();
+  }
+}
@@ -0,0 +1,92 @@
+package com.avaje.jdk.realworld.web;
+
+import com.avaje.jdk.realworld.metrics.ReplicaReads;
+import com.avaje.jdk.realworld.web.service.BoundedCache;
+import io.avaje.config.Config;
+import io.ebean.DB;
+import jakarta.inject.Singleton;
+import java.util.UUID;
+
+/**
+ * Bounded caches of the article slug to article id and username to user id mappings, so the
+ * handlers taking a slug or username in the path run primary key statements only.
+ *
+ * <p>Entries are dropped here when a slug or username changes or the row is deleted. Changes made
+ * by other instances are picked up once the entry is older than {@code cache.lookup.ttl} seconds.
+ * Until then a stale id may point at a deleted row or at the row that was renamed, so every write
+ * matches the slug or username together with the id. A write that matches no row evicts the entry
+ * and answers 404.
+ *
+ * <p>Misses are looked up on the primary even inside a replica routed request, a mapping read from
+ * a lagging replica would otherwise stay cached for the whole ttl.
+ */
+@Singleton
+public final class IdLookups {
+
+  private static final int MAX_SIZE = Config.getInt("cache.lookup.maxSize", 100_000);
+  private static final long TTL = Config.getLong("cache.lookup.ttl", 300);
+
+  static final String ARTICLE_ID_SQL =
+      """
+      SELECT id
+      FROM realworld.article
+      WHERE slug = ?
+      """;
+
+  static final String USER_ID_SQL =
+      """
+      SELECT id
+      FROM realworld.user
+      WHERE username = ?
+      """;
+
+  private final BoundedCache<String, UUID> articles = new BoundedCache<>(MAX_SIZE, TTL * 1000);
+  private final BoundedCache<String, UUID> users = new BoundedCache<>(MAX_SIZE, TTL * 1000);
+
+  /** Return the id of the article with the given slug, or null when there is none. */
+  public UUID articleId(String slug) {
+    return lookup(articles, slug, ARTICLE_ID_SQL);
+  }
+
+  /** Return the id of the user with the given username, or null when there is none. */
+  public UUID userId(String username) {
+    return lookup(users, username, USER_ID_SQL);
+  }
+
+  /** Drop the slug, used when the article is renamed or deleted. */
+  public void evictSlug(String slug) {
+    articles.evict(slug);
+  }
+
+  /** Drop the usernames of the user, used when the user is renamed or deleted. */
+  public void evictUser(UUID userId) {
+    users.evictIf(userId::equals);
+  }
+
+  public long hits() {
+    return articles.hits() + users.hits();
+  }
+
+  public long misses() {
+    return articles.misses() + users.misses();
+  }
+
+  public int size() {
+    return articles.size() + users.size();
+  }
+
+  private static UUID lookup(BoundedCache<String, UUID> ids, String name, String sql) {
+    var id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+    var observed = ids.generation();
+    try (var primary = ReplicaReads.primary()) {
+      id = DB.sqlQuery(sql).setParameter(name).mapToScalar(UUID.class).findOne();
+    }
+    if (id != null) {
+      ids.put(name, id, observed);
+    }
+    return id;
+  }
+}
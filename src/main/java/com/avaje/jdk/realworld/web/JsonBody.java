@@ -0,0 +1,76 @@
+package com.avaje.jdk.realworld.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.avaje.jex.http.Context;
+import io.ebean.RowConsumer;
+import io.ebean.SqlQuery;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+
+/**
+ * Writes jsonb query results to the response body as the UTF-8 bytes the driver received.
+ *
+ * <p>pgjdbc reads jsonb in text form, so {@code getBytes} hands back the row's bytes as they came
+ * off the wire. Decoding them to a String and letting Jex encode that again would copy every
+ * document twice. Arrays are streamed a row at a time through a cursor so neither Postgres nor the
+ * heap holds the whole array.
+ */
+final class JsonBody {
+
+  private static final String JSON = "application/json";
+  private static final int FETCH_SIZE = 100;
+  private static final byte[] ARRAY_END = "]".getBytes(UTF_8);
+  private static final byte[] OBJECT_END = "}".getBytes(UTF_8);
+
+  private JsonBody() {}
+
+  /** Write a document that is already bytes. */
+  static void write(Context ctx, byte[] json) {
+    // set explicitly, the route of a void handler doesn't answer 200 by default
+    ctx.status(200).contentType(JSON).write(json);
+  }
+
+  /**
+   * Write {@code {"<field>": [...]<trailer>}} with one element per row of the query's first,
+   * jsonb, column. Each row is also passed to {@code rows}, so the trailer, rendered once the rows
+   * are written, can carry page state such as the next cursor.
+   */
+  static void array(
+      Context ctx, String field, SqlQuery query, RowConsumer rows, Supplier<String> trailer) {
+    ctx.status(200).contentType(JSON);
+    try (var out = ctx.outputStream()) {
+      array(out, field, query, rows, trailer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Write the document of the array method above to {@code out}. */
+  static void array(
+      OutputStream out, String field, SqlQuery query, RowConsumer rows, Supplier<String> trailer)
+      throws IOException {
+    out.write(("{\"" + field + "\": [").getBytes(UTF_8));
+    var first = new boolean[] {true};
+    query
+        .setBufferFetchSizeHint(FETCH_SIZE)
+        .findEachRow(
+            (rs, row) -> {
+              try {
+                if (!first[0]) {
+                  out.write(',');
+                }
+                first[0] = false;
+                out.write(rs.getBytes(1));
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+              rows.accept(rs, row);
+            });
+    out.write(ARRAY_END);
+    out.write(trailer.get().getBytes(UTF_8));
+    out.write(OBJECT_END);
+  }
+}
@@ -1,89 +1,195 @@
 package com.avaje.jdk.realworld.web;
 
+import com.avaje.jdk.realworld.exception.AppError;
 import com.avaje.jdk.realworld.models.Profile;
 import com.avaje.jdk.realworld.models.responses.ProfileResponse;
 import com.avaje.jdk.realworld.security.AppRole;
 import com.avaje.jdk.realworld.security.Roles;
+import com.avaje.jdk.realworld.web.service.FollowGraph;
+import io.avaje.config.Config;
 import io.avaje.http.api.Controller;
 import io.avaje.http.api.Delete;
 import io.avaje.http.api.Get;
 import io.avaje.http.api.Post;
 import io.avaje.jex.http.Context;
+import io.avaje.jex.http.HttpResponseException;
 import io.ebean.DB;
-import io.ebean.annotation.Transactional;
+import java.util.UUID;
 
 @Roles(AppRole.JWT)
 @Controller("/profiles")
 public final class ProfilesController {
 
-  private static final String PROFILE_SQL =
+  static final String PROFILE_SQL =
       """
-      SELECT
-          username,
-          bio,
-          image,
-          EXISTS(
-              SELECT id
-              FROM realworld.follow
-              WHERE from_user_id = ? AND to_user_id = realworld.user.id
-          ) as following
+      SELECT username, bio, image
+      FROM realworld.user
+      WHERE id = ?
+      """;
+  static final String PROFILE_VERSION_SQL =
+      """
+      SELECT updated_at
       FROM realworld.user
-      WHERE username = ?
+      WHERE id = ?
+      """;
+
+  /**
+   * Follow and backfill the feed with the author's recent articles. Matches the username too, so a
+   * stale cached id never follows a user that was renamed meanwhile, and returns 0 in that case.
+   */
+  static final String FOLLOW_SQL =
+      """
+      WITH
+          target AS (
+              SELECT id
+              FROM realworld.user
+              WHERE id = ? AND username = ?
+          ),
+          followed AS (
+              INSERT INTO realworld.follow(from_user_id, to_user_id)
+              SELECT ?, id
+              FROM target
+              ON CONFLICT DO NOTHING
+              RETURNING from_user_id, to_user_id
+          ),
+          backfilled AS (
+              INSERT INTO realworld.feed_entry(user_id, created_at, article_id)
+              SELECT followed.from_user_id, recent.created_at, recent.id
+              FROM followed
+              CROSS JOIN LATERAL (
+                  SELECT created_at, id
+                  FROM realworld.article
+                  WHERE user_id = followed.to_user_id
+                  ORDER BY created_at DESC, id DESC
+                  LIMIT ?
+              ) recent
+              ON CONFLICT DO NOTHING
+          )
+      SELECT count(*) FROM target
+      """;
+
+  /**
+   * Unfollow and prune the author's articles from the feed, returns 0 when the user no longer has
+   * the username.
+   */
+  static final String UNFOLLOW_SQL =
+      """
+      WITH
+          target AS (
+              SELECT id
+              FROM realworld.user
+              WHERE id = ? AND username = ?
+          ),
+          unfollowed AS (
+              DELETE FROM realworld.follow
+              WHERE from_user_id = ? AND to_user_id IN (SELECT id FROM target)
+              RETURNING from_user_id, to_user_id
+          ),
+          pruned AS (
+              DELETE FROM realworld.feed_entry
+              USING unfollowed, realworld.article
+              WHERE realworld.article.user_id = unfollowed.to_user_id
+                  AND realworld.feed_entry.user_id = unfollowed.from_user_id
+                  AND realworld.feed_entry.created_at = realworld.article.created_at
+                  AND realworld.feed_entry.article_id = realworld.article.id
+          )
+      SELECT count(*) FROM target
       """;
+
   private static final String USER_ID = "userId";
+  private static final String NO_MATCHING_USER = "No matching user";
+  private static final int FEED_BACKFILL = Config.getInt("feed.backfill.limit", 100);
+
+  private final IdLookups idLookups;
+  private final FollowGraph followGraph;
+
+  ProfilesController(IdLookups idLookups, FollowGraph followGraph) {
+    this.idLookups = idLookups;
+    this.followGraph = followGraph;
+  }
 
   @Get("/{username}")
   ProfileResponse getProfileHandler(Context ctx, String username) {
 
-    return new ProfileResponse(getProfile(ctx, username));
+    UUID userId = ctx.attribute(USER_ID);
+    var profileId = findUser(username);
+    var version =
+        DB.sqlQuery(PROFILE_VERSION_SQL)
+            .setParameter(profileId)
+            .findOneOrEmpty()
+            .orElseThrow(() -> noMatch(profileId));
+    ETags.check(
+        ctx,
+        userId,
+        ETags.of(
+            profileId,
+            version.getTimestamp("updated_at").toInstant(),
+            followGraph.following(userId, profileId)));
+
+    return new ProfileResponse(getProfile(ctx, profileId));
   }
 
-  private Profile getProfile(Context ctx, String username) {
-    return DB.findDto(Profile.class, PROFILE_SQL)
-        .setParameter(ctx.attribute(USER_ID))
-        .setParameter(username)
-        .findOne();
+  private Profile getProfile(Context ctx, UUID profileId) {
+    var row =
+        DB.sqlQuery(PROFILE_SQL)
+            .setParameter(profileId)
+            .findOneOrEmpty()
+            .orElseThrow(() -> noMatch(profileId));
+    UUID userId = ctx.attribute(USER_ID);
+    return new Profile(
+        row.getString("username"),
+        row.getString("bio"),
+        row.getString("image"),
+        followGraph.following(userId, profileId));
+  }
+
+  private UUID findUser(String username) {
+    var profileId = idLookups.userId(username);
+    if (profileId == null) {
+      throw new HttpResponseException(404, new AppError(NO_MATCHING_USER));
+    }
+    return profileId;
+  }
+
+  /** The 404 for a user that is gone, dropping the user's cached id. */
+  private HttpResponseException noMatch(UUID profileId) {
+    idLookups.evictUser(profileId);
+    return new HttpResponseException(404, new AppError(NO_MATCHING_USER));
   }
 
-  @Transactional
   @Post("/{username}/follow")
   ProfileResponse followUserHandler(Context ctx, String username) {
 
-    var userId = ctx.attribute(USER_ID);
-    DB.sqlUpdate(
-            """
-            INSERT INTO realworld.follow(from_user_id, to_user_id)
-            VALUES (?, (
-                SELECT id
-                FROM realworld.user
-                WHERE username = ?
-            ))
-            ON CONFLICT DO NOTHING
-            """)
-        .setParameter(userId)
-        .setParameter(username)
-        .execute();
-
-    return new ProfileResponse(getProfile(ctx, username));
+    UUID userId = ctx.attribute(USER_ID);
+    var profileId = findUser(username);
+    var matched =
+        DB.sqlQuery(FOLLOW_SQL)
+            .setParameters(profileId, username, userId, FEED_BACKFILL)
+            .mapToScalar(Long.class)
+            .findOne();
+    if (matched == 0) {
+      throw noMatch(profileId);
+    }
+    followGraph.follow(userId, profileId);
+
+    return new ProfileResponse(getProfile(ctx, profileId));
   }
 
   @Delete("/{username}/follow")
   ProfileResponse unfollowUserHandler(Context ctx, String username) {
 
-    var userId = ctx.attribute(USER_ID);
-    DB.sqlUpdate(
-            """
-            DELETE FROM realworld.follow
-            WHERE from_user_id = ? AND to_user_id = (
-                SELECT id
-                FROM realworld.user
-                WHERE username = ?
-            )
-            """)
-        .setParameter(userId)
-        .setParameter(username)
-        .execute();
-
-    return new ProfileResponse(getProfile(ctx, username));
+    UUID userId = ctx.attribute(USER_ID);
+    var profileId = findUser(username);
+    var matched =
+        DB.sqlQuery(UNFOLLOW_SQL)
+            .setParameters(profileId, username, userId)
+            .mapToScalar(Long.class)
+            .findOne();
+    if (matched == 0) {
+      throw noMatch(profileId);
+    }
+    followGraph.unfollow(userId, profileId);
+
+    return new ProfileResponse(getProfile(ctx, profileId));
   }
 }
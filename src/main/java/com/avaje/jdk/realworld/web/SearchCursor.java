@@ -0,0 +1,31 @@
+package com.avaje.jdk.realworld.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset cursor of article search results, the (rank, id) of the last article of a page.
+ *
+ * <p>Encoded as base64url of {@code <rank>:<uuid>}.
+ */
+record SearchCursor(float rank, UUID id) {
+
+  static SearchCursor decode(String cursor) {
+    try {
+      var text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      var sep = text.indexOf(':');
+      var rank = Float.parseFloat(text.substring(0, sep));
+      return new SearchCursor(rank, UUID.fromString(text.substring(sep + 1)));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("invalid cursor");
+    }
+  }
+
+  String encode() {
+    var text = rank + ":" + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(text.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -38,13 +38,30 @@ public final class UserController {
 
   private static final String USER_ID = "userId";
 
+  static final String DUPLICATE_USER_SQL =
+      """
+      SELECT
+          (
+              SELECT COUNT(realworld.user.id)
+              FROM realworld.user
+              WHERE username = ?
+          ) as matching_username,
+          (
+              SELECT COUNT(realworld.user.id)
+              FROM realworld.user
+              WHERE email = ?::citext
+          ) as matching_email
+      """;
+
   private static final Logger LOG = LoggerFactory.getLogger(UserController.class);
 
   private final TokenService tokenService;
+  private final IdLookups idLookups;
 
-  UserController(TokenService tokenService) {
+  UserController(TokenService tokenService, IdLookups idLookups) {
 
     this.tokenService = tokenService;
+    this.idLookups = idLookups;
   }
 
   @Roles(AppRole.ANYONE)
@@ -71,20 +88,7 @@ public final class UserController {
   private void determineWhy(SignUpRequest body) {
     LOG.warn("Matching user found. Determining why");
     var row =
-        DB.sqlQuery(
-                """
-                SELECT
-                    (
-                        SELECT COUNT(realworld.user.id)
-                        FROM realworld.user
-                        WHERE username = ?
-                    ) as matching_username,
-                    (
-                        SELECT COUNT(realworld.user.id)
-                        FROM realworld.user
-                        WHERE email = ?
-                    ) as matching_email
-                """)
+        DB.sqlQuery(DUPLICATE_USER_SQL)
             .setParameter(1, body.username())
             .setParameter(2, body.email().toLowerCase(Locale.US))
             .findOne();
@@ -117,8 +121,8 @@ public final class UserController {
                 columns.bio,
                 columns.image,
                 columns.passwordHash)
-            .email
-            .eq(body.email())
+            // bound as citext, a varchar compares as text and can't use the unique index
+            .raw("email = ?::citext", body.email())
             .findOne();
 
     if (rs == null) {
@@ -172,6 +176,9 @@ public final class UserController {
         image.ifPresent(userEnt::image);
         bio.ifPresent(userEnt::bio);
         userEnt.save();
+        if (username.isPresent()) {
+          idLookups.evictUser(userId);
+        }
       }
     }
     return new UserResponse(
@@ -183,5 +190,7 @@ public final class UserController {
 
     UUID userId = ctx.attribute(USER_ID);
     new UserEntity().id(userId).delete();
+    tokenService.evictUser(userId);
+    idLookups.evictUser(userId);
   }
 }
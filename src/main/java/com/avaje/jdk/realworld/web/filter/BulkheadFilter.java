@@ -0,0 +1,112 @@
+package com.avaje.jdk.realworld.web.filter;
+
+import com.avaje.jdk.realworld.exception.AppError;
+import io.avaje.config.Config;
+import io.avaje.http.api.Controller;
+import io.avaje.http.api.Filter;
+import io.avaje.jex.http.Context;
+import io.avaje.jex.http.HttpFilter.FilterChain;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits concurrently executing API requests to the size of the Ebean connection pool.
+ *
+ * <p>Requests beyond that wait in a bounded fair queue. When the queue is full, or the wait times
+ * out, the request fails fast with 503 and Retry-After instead of piling up on the pool.
+ */
+@Controller
+public final class BulkheadFilter {
+
+  private static final int PERMITS =
+      Config.getInt(
+          "server.bulkhead.permits", Config.getInt("datasource.db.maxConnections", 200));
+  private static final int MAX_QUEUE = Config.getInt("server.bulkhead.maxQueue", PERMITS * 2);
+  private static final long MAX_WAIT = Config.getLong("server.bulkhead.maxWaitMillis", 1000);
+  private static final String RETRY_AFTER = Config.get("server.bulkhead.retryAfter", "1");
+
+  private final Semaphore permits = new Semaphore(PERMITS, true);
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder waitCount = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+
+  @Filter
+  void bulkhead(Context ctx, FilterChain chain) {
+
+    if (!ctx.path().startsWith("/api/")) {
+      chain.proceed();
+      return;
+    }
+
+    var start = System.nanoTime();
+    if (!acquire()) {
+      rejected.increment();
+      ctx.header("Retry-After", RETRY_AFTER).status(503).json(new AppError("Server busy"));
+      return;
+    }
+    var waited = System.nanoTime() - start;
+    waitCount.increment();
+    waitNanos.add(waited);
+    maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+    try {
+      chain.proceed();
+    } finally {
+      permits.release();
+    }
+  }
+
+  private boolean acquire() {
+    try {
+      // the timed form honours the fair ordering, plain tryAcquire() barges
+      if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+      if (waiting.incrementAndGet() > MAX_QUEUE) {
+        waiting.decrementAndGet();
+        return false;
+      }
+      try {
+        return permits.tryAcquire(MAX_WAIT, TimeUnit.MILLISECONDS);
+      } finally {
+        waiting.decrementAndGet();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  public int permits() {
+    return PERMITS;
+  }
+
+  public int inFlight() {
+    return PERMITS - permits.availablePermits();
+  }
+
+  public int queueDepth() {
+    return waiting.get();
+  }
+
+  public long rejected() {
+    return rejected.sum();
+  }
+
+  public long waitCount() {
+    return waitCount.sum();
+  }
+
+  public long waitNanos() {
+    return waitNanos.sum();
+  }
+
+  public long maxWaitNanos() {
+    return maxWaitNanos.get();
+  }
+}
@@ -0,0 +1,89 @@
+package com.avaje.jdk.realworld.web.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * gzip or deflate stream over a pooled Deflater. GZIPOutputStream can't take a Deflater, so the
+ * gzip header and trailer are written here around a raw deflate stream.
+ */
+final class CompressingOutputStream extends DeflaterOutputStream {
+
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+  private final DeflaterPool pool;
+  private final CRC32 crc;
+  private boolean closed;
+
+  private CompressingOutputStream(
+      OutputStream out, DeflaterPool pool, Deflater deflater, boolean gzip) throws IOException {
+    super(out, deflater, 8192);
+    this.pool = pool;
+    this.crc = gzip ? new CRC32() : null;
+    if (gzip) {
+      out.write(GZIP_HEADER);
+    }
+  }
+
+  /** gzip stream, the pool must hold raw (nowrap) Deflaters. */
+  static CompressingOutputStream gzip(OutputStream out, DeflaterPool pool) throws IOException {
+    return create(out, pool, true);
+  }
+
+  /** deflate (zlib) stream, the pool must hold zlib wrapped Deflaters. */
+  static CompressingOutputStream deflate(OutputStream out, DeflaterPool pool) throws IOException {
+    return create(out, pool, false);
+  }
+
+  private static CompressingOutputStream create(OutputStream out, DeflaterPool pool, boolean gzip)
+      throws IOException {
+    var deflater = pool.borrow();
+    try {
+      return new CompressingOutputStream(out, pool, deflater, gzip);
+    } catch (IOException e) {
+      pool.release(deflater);
+      throw e;
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    super.write(b, off, len);
+    if (crc != null) {
+      crc.update(b, off, len);
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      finish();
+      if (crc != null) {
+        writeIntLE(crc.getValue());
+        writeIntLE(def.getBytesRead());
+      }
+      out.close();
+    } finally {
+      pool.release(def);
+    }
+  }
+
+  private void writeIntLE(long value) throws IOException {
+    out.write((int) value & 0xff);
+    out.write((int) (value >> 8) & 0xff);
+    out.write((int) (value >> 16) & 0xff);
+    out.write((int) (value >> 24) & 0xff);
+  }
+}
@@ -0,0 +1,371 @@
+package com.avaje.jdk.realworld.web.filter;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import io.avaje.config.Config;
+import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * gzip/deflate response compression, negotiated on Accept-Encoding.
+ *
+ * <p>Jex sends the Content-Length with the response headers before the body is written, so this
+ * runs as a jdk.httpserver filter that wraps the exchange: when {@code sendResponseHeaders} is
+ * called with a compressible content type and a body of at least {@code server.compression.minSize}
+ * bytes, the response is switched to chunked and written through a pooled Deflater. Responses that
+ * already carry a Content-Encoding, such as precompressed static content, pass through untouched.
+ */
+@Singleton
+public final class CompressionFilter extends Filter {
+
+  /** Exchange attribute holding the compressed size of the response body once it is written. */
+  public static final String WIRE_BYTES = "compression.wireBytes";
+
+  private static final int MIN_SIZE = Config.getInt("server.compression.minSize", 1024);
+  private static final int LEVEL =
+      Config.getInt("server.compression.level", Deflater.BEST_SPEED);
+  private static final int POOL_SIZE =
+      Config.getInt("server.compression.poolSize", Runtime.getRuntime().availableProcessors() * 4);
+
+  private final DeflaterPool gzipPool = new DeflaterPool(LEVEL, true, POOL_SIZE);
+  private final DeflaterPool deflatePool = new DeflaterPool(LEVEL, false, POOL_SIZE);
+  private final LongAdder compressed = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder bytesIn = new LongAdder();
+  private final LongAdder bytesOut = new LongAdder();
+
+  enum Encoding {
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    final String token;
+
+    Encoding(String token) {
+      this.token = token;
+    }
+  }
+
+  @Override
+  public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+    var encoding = negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+    if (encoding == null || "HEAD".equals(exchange.getRequestMethod())) {
+      chain.doFilter(exchange);
+      return;
+    }
+    var compressing = new CompressingExchange(exchange, encoding);
+    try {
+      chain.doFilter(compressing);
+    } finally {
+      compressing.finish();
+    }
+  }
+
+  @Override
+  public String description() {
+    return "gzip/deflate response compression";
+  }
+
+  /** Pick gzip over deflate, honouring q=0 exclusions and the * wildcard. */
+  static Encoding negotiate(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    float gzip = -1, deflate = -1, wildcard = -1;
+    for (var part : acceptEncoding.split(",")) {
+      var params = part.split(";");
+      var token = params[0].strip().toLowerCase(Locale.ROOT);
+      var q = 1f;
+      for (int i = 1; i < params.length; i++) {
+        var param = params[i].strip();
+        if (param.startsWith("q=")) {
+          try {
+            q = Float.parseFloat(param.substring(2));
+          } catch (NumberFormatException e) {
+            q = 0;
+          }
+        }
+      }
+      switch (token) {
+        case "gzip", "x-gzip" -> gzip = q;
+        case "deflate" -> deflate = q;
+        case "*" -> wildcard = q;
+        default -> {}
+      }
+    }
+    if (gzip < 0) {
+      gzip = wildcard;
+    }
+    if (deflate < 0) {
+      deflate = wildcard;
+    }
+    if (gzip > 0 && gzip >= deflate) {
+      return Encoding.GZIP;
+    }
+    return deflate > 0 ? Encoding.DEFLATE : null;
+  }
+
+  static boolean compressible(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    var type = contentType.toLowerCase(Locale.ROOT);
+    return type.startsWith("application/json")
+        || type.startsWith("text/")
+        || type.startsWith("application/javascript")
+        || type.startsWith("image/svg+xml");
+  }
+
+  public long compressed() {
+    return compressed.sum();
+  }
+
+  public long skipped() {
+    return skipped.sum();
+  }
+
+  /** Uncompressed bytes of the compressed responses. */
+  public long bytesIn() {
+    return bytesIn.sum();
+  }
+
+  /** Bytes written on the wire for the compressed responses, excluding chunk framing. */
+  public long bytesOut() {
+    return bytesOut.sum();
+  }
+
+  /** Exchange that decides to compress when the response headers are sent. */
+  private final class CompressingExchange extends HttpExchange {
+
+    private final HttpExchange delegate;
+    private final Encoding encoding;
+    private final ResponseStream body;
+
+    CompressingExchange(HttpExchange delegate, Encoding encoding) {
+      this.delegate = delegate;
+      this.encoding = encoding;
+      this.body = new ResponseStream(delegate);
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+      var headers = delegate.getResponseHeaders();
+      // -1 is no body, 0 is a chunked body of unknown length
+      var compress =
+          responseLength >= 0
+              && (responseLength == 0 || responseLength >= MIN_SIZE)
+              && rCode >= 200
+              && rCode != 204
+              && rCode != 304
+              && !headers.containsKey("Content-Encoding")
+              && compressible(headers.getFirst("Content-Type"));
+
+      if (!compress) {
+        if (responseLength > 0) {
+          skipped.increment();
+        }
+        delegate.sendResponseHeaders(rCode, responseLength);
+        body.target = delegate.getResponseBody();
+        return;
+      }
+      headers.set("Content-Encoding", encoding.token);
+      headers.add("Vary", "Accept-Encoding");
+      // the strong ETag names the identity representation
+      var etag = headers.getFirst("ETag");
+      if (etag != null && etag.startsWith("\"")) {
+        headers.set("ETag", "W/" + etag);
+      }
+      delegate.sendResponseHeaders(rCode, 0);
+      var wire = new CountingOutputStream(delegate.getResponseBody());
+      body.wire = wire;
+      body.target =
+          encoding == Encoding.GZIP
+              ? CompressingOutputStream.gzip(wire, gzipPool)
+              : CompressingOutputStream.deflate(wire, deflatePool);
+      compressed.increment();
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+      return body;
+    }
+
+    @Override
+    public void close() {
+      finish();
+      delegate.close();
+    }
+
+    /** Flush the compressor trailer and return the Deflater to its pool. */
+    void finish() {
+      try {
+        body.close();
+      } catch (IOException e) {
+        // the client went away, the delegate's close cleans up the connection
+      }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+      delegate.setStreams(i, o);
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+      return delegate.getRequestHeaders();
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+      return delegate.getResponseHeaders();
+    }
+
+    @Override
+    public URI getRequestURI() {
+      return delegate.getRequestURI();
+    }
+
+    @Override
+    public String getRequestMethod() {
+      return delegate.getRequestMethod();
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+      return delegate.getHttpContext();
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+      return delegate.getRequestBody();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+      return delegate.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+      return delegate.getResponseCode();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+      return delegate.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+      return delegate.getProtocol();
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+      return delegate.getAttribute(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+      delegate.setAttribute(name, value);
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+      return delegate.getPrincipal();
+    }
+  }
+
+  /** Body handed out before the headers are sent, bound to the real stream once they are. */
+  private final class ResponseStream extends OutputStream {
+
+    private final HttpExchange exchange;
+    private OutputStream target;
+    private CountingOutputStream wire;
+    private long written;
+    private boolean closed;
+
+    ResponseStream(HttpExchange exchange) {
+      this.exchange = exchange;
+    }
+
+    private OutputStream target() throws IOException {
+      if (target == null) {
+        throw new IOException("response headers not sent");
+      }
+      return target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      target().write(b);
+      written++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      target().write(b, off, len);
+      written += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      target().flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed || target == null) {
+        return;
+      }
+      closed = true;
+      target.close();
+      if (wire != null) {
+        bytesIn.add(written);
+        bytesOut.add(wire.count);
+        exchange.setAttribute(WIRE_BYTES, wire.count);
+      }
+    }
+  }
+
+  private static final class CountingOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.avaje.jdk.realworld.web.filter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/** Bounded pool of Deflaters so compressing a response doesn't allocate native zlib state. */
+final class DeflaterPool {
+
+  private final ArrayBlockingQueue<Deflater> pool;
+  private final int level;
+  private final boolean nowrap;
+
+  DeflaterPool(int level, boolean nowrap, int maxIdle) {
+    this.pool = new ArrayBlockingQueue<>(maxIdle);
+    this.level = level;
+    this.nowrap = nowrap;
+  }
+
+  Deflater borrow() {
+    var deflater = pool.poll();
+    return deflater != null ? deflater : new Deflater(level, nowrap);
+  }
+
+  void release(Deflater deflater) {
+    deflater.reset();
+    if (!pool.offer(deflater)) {
+      deflater.end();
+    }
+  }
+}
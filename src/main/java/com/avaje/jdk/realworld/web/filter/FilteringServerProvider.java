@@ -0,0 +1,100 @@
+package com.avaje.jdk.realworld.web.filter;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsServer;
+import com.sun.net.httpserver.spi.HttpServerProvider;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Default jdk.httpserver provider that adds the given exchange filters to every context Jex
+ * creates, for the filters that need to wrap the raw exchange rather than the Jex context.
+ */
+public final class FilteringServerProvider extends HttpServerProvider {
+
+  private final HttpServerProvider delegate = HttpServerProvider.provider();
+  private final List<Filter> filters;
+
+  public FilteringServerProvider(Filter... filters) {
+    this.filters = List.of(filters);
+  }
+
+  @Override
+  public HttpServer createHttpServer(InetSocketAddress addr, int backlog) throws IOException {
+    return new FilteringServer(delegate.createHttpServer(addr, backlog));
+  }
+
+  @Override
+  public HttpsServer createHttpsServer(InetSocketAddress addr, int backlog) throws IOException {
+    return delegate.createHttpsServer(addr, backlog);
+  }
+
+  private final class FilteringServer extends HttpServer {
+
+    private final HttpServer server;
+
+    FilteringServer(HttpServer server) {
+      this.server = server;
+    }
+
+    private HttpContext filtered(HttpContext context) {
+      context.getFilters().addAll(0, filters);
+      return context;
+    }
+
+    @Override
+    public HttpContext createContext(String path, HttpHandler handler) {
+      return filtered(server.createContext(path, handler));
+    }
+
+    @Override
+    public HttpContext createContext(String path) {
+      return filtered(server.createContext(path));
+    }
+
+    @Override
+    public void bind(InetSocketAddress addr, int backlog) throws IOException {
+      server.bind(addr, backlog);
+    }
+
+    @Override
+    public void start() {
+      server.start();
+    }
+
+    @Override
+    public void setExecutor(Executor executor) {
+      server.setExecutor(executor);
+    }
+
+    @Override
+    public Executor getExecutor() {
+      return server.getExecutor();
+    }
+
+    @Override
+    public void stop(int delay) {
+      server.stop(delay);
+    }
+
+    @Override
+    public void removeContext(String path) {
+      server.removeContext(path);
+    }
+
+    @Override
+    public void removeContext(HttpContext context) {
+      server.removeContext(context);
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+      return server.getAddress();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.avaje.jdk.realworld.web.service;
+
+import io.avaje.config.Config;
+import io.avaje.inject.PostConstruct;
+import io.avaje.inject.PreDestroy;
+import io.ebean.DB;
+import io.ebean.TxScope;
+import io.ebean.annotation.TxIsolation;
+import jakarta.inject.Singleton;
+import jakarta.persistence.PersistenceException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically repairs drift of realworld.article.favorites_count and comments_count, for example
+ * from favorites and comments removed by the cascade when a user is deleted.
+ *
+ * <p>Articles are repaired in id ordered chunks, each in a repeatable read transaction. A chunk
+ * that races with a concurrent favorite or comment fails with a serialization error and is left
+ * for the next run rather than overwriting the newer count.
+ */
+@Singleton
+public class ArticleCountsReconciler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ArticleCountsReconciler.class);
+
+  private static final long INTERVAL = Config.getLong("articles.reconcile.interval", 3600);
+  private static final int CHUNK_SIZE = Config.getInt("articles.reconcile.chunkSize", 1000);
+
+  private static final String CHUNK_END_SQL =
+      """
+      SELECT id
+      FROM (
+          SELECT id
+          FROM realworld.article
+          WHERE id > ?
+          ORDER BY id
+          LIMIT ?
+      ) chunk
+      ORDER BY id DESC
+      LIMIT 1
+      """;
+
+  private static final String REPAIR_SQL =
+      """
+      UPDATE realworld.article
+      SET favorites_count = counted.favorites_count, comments_count = counted.comments_count
+      FROM (
+          SELECT
+              realworld.article.id,
+              (
+                  SELECT count(*)
+                  FROM realworld.favorite
+                  WHERE realworld.favorite.article_id = realworld.article.id
+              ) AS favorites_count,
+              (
+                  SELECT count(*)
+                  FROM realworld.comment
+                  WHERE realworld.comment.article_id = realworld.article.id
+              ) AS comments_count
+          FROM realworld.article
+          WHERE realworld.article.id > ? AND realworld.article.id <= ?
+      ) counted
+      WHERE counted.id = realworld.article.id
+          AND (counted.favorites_count, counted.comments_count)
+              IS DISTINCT FROM (realworld.article.favorites_count, realworld.article.comments_count)
+      """;
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().daemon().name("article-counts-reconciler").factory());
+
+  @PostConstruct
+  void start() {
+    if (INTERVAL > 0) {
+      executor.scheduleWithFixedDelay(this::run, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+    }
+  }
+
+  private void run() {
+    try {
+      reconcile();
+    } catch (RuntimeException e) {
+      LOG.warn("article counts reconciliation failed", e);
+    }
+  }
+
+  @PreDestroy
+  void stop() {
+    executor.shutdownNow();
+  }
+
+  /** Repair every article and return the number of rows corrected. */
+  public int reconcile() {
+    var repaired = 0;
+    var skipped = 0;
+    var from = new UUID(0, 0);
+    while (true) {
+      Optional<UUID> to =
+          DB.sqlQuery(CHUNK_END_SQL)
+              .setParameters(from, CHUNK_SIZE)
+              .mapToScalar(UUID.class)
+              .findOneOrEmpty();
+      if (to.isEmpty()) {
+        break;
+      }
+
+      try (var txn =
+          DB.beginTransaction(TxScope.required().setIsolation(TxIsolation.REPEATABLE_READ))) {
+        repaired += DB.sqlUpdate(REPAIR_SQL).setParameters(from, to.get()).execute();
+        txn.commit();
+      } catch (PersistenceException e) {
+        LOG.debug("Skipped article counts chunk after {}", from, e);
+        skipped++;
+      }
+      from = to.get();
+    }
+
+    if (repaired > 0 || skipped > 0) {
+      LOG.info("Repaired counts of {} articles, skipped {} chunks", repaired, skipped);
+    }
+    return repaired;
+  }
+}
@@ -0,0 +1,129 @@
+package com.avaje.jdk.realworld.web.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded map whose entries expire, guarded by an eviction generation so a value read from the
+ * database concurrently with an eviction is never cached.
+ *
+ * <p>Callers read {@link #generation()} before loading a value and pass it to {@code put}, which
+ * drops the value again if anything was evicted in between.
+ *
+ * <p>Once full, one insert frees a tenth of the capacity, dropping the expired entries first and
+ * then arbitrary ones, so the scan of the map is paid once per batch of inserts rather than on
+ * every insert. Inserts racing that thread don't wait for it and may briefly overshoot the bound.
+ */
+public final class BoundedCache<K, V> {
+
+  private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final int maxSize;
+  private final int evictTo;
+  private final long ttlMillis;
+
+  private record Entry<V>(V value, long expiresAt) {}
+
+  public BoundedCache(int maxSize, long ttlMillis) {
+    this.maxSize = maxSize;
+    this.evictTo = maxSize - Math.max(1, maxSize / 10);
+    this.ttlMillis = ttlMillis;
+  }
+
+  /** Return the cached value or null if not cached or expired. */
+  public V get(K key) {
+    var entry = entries.get(key);
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    if (entry.expiresAt <= System.currentTimeMillis()) {
+      entries.remove(key, entry);
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.value;
+  }
+
+  /** Cache the value for the ttl, see {@link #put(Object, Object, long, long)}. */
+  public void put(K key, V value, long observedGeneration) {
+    put(key, value, Long.MAX_VALUE, observedGeneration);
+  }
+
+  /**
+   * Cache the value until the ttl or {@code notAfter} epoch millis, whichever comes first. Skipped
+   * when an entry was evicted after {@code observedGeneration} was read.
+   */
+  public void put(K key, V value, long notAfter, long observedGeneration) {
+    var now = System.currentTimeMillis();
+    var expiresAt = Math.min(now + ttlMillis, notAfter);
+    if (expiresAt <= now) {
+      return;
+    }
+    if (entries.size() >= maxSize) {
+      makeRoom(now);
+    }
+    var entry = new Entry<>(value, expiresAt);
+    entries.put(key, entry);
+    if (generation.get() != observedGeneration) {
+      entries.remove(key, entry);
+    }
+  }
+
+  private void makeRoom(long now) {
+    if (!evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      entries.values().removeIf(e -> e.expiresAt <= now);
+      var it = entries.keySet().iterator();
+      while (entries.size() > evictTo && it.hasNext()) {
+        it.next();
+        it.remove();
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  /** Remove the entry of the key. */
+  public void evict(K key) {
+    generation.incrementAndGet();
+    entries.remove(key);
+  }
+
+  /** Remove every entry whose value matches, a scan of the whole map. */
+  public void evictIf(Predicate<? super V> filter) {
+    generation.incrementAndGet();
+    entries.values().removeIf(e -> filter.test(e.value));
+  }
+
+  /** Remove every entry. */
+  public void clear() {
+    generation.incrementAndGet();
+    entries.clear();
+  }
+
+  public long generation() {
+    return generation.get();
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+}
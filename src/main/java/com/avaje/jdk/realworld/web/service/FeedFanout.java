@@ -0,0 +1,173 @@
+package com.avaje.jdk.realworld.web.service;
+
+import io.avaje.config.Config;
+import io.avaje.inject.PostConstruct;
+import io.avaje.inject.PreDestroy;
+import io.ebean.DB;
+import io.ebean.DataIntegrityException;
+import jakarta.inject.Singleton;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fans a new article out to the feed_entry timelines of the followers of authors with more than
+ * {@code feed.fanout.syncMaxFollowers} followers. Smaller fan-outs run in the statement creating
+ * the article.
+ *
+ * <p>Followers are walked in id ordered batches, each batch is its own statement so a large
+ * fan-out doesn't hold one long transaction. Followers gained meanwhile are covered by the follow
+ * backfill, duplicates are ignored.
+ *
+ * <p>The article creating statement records a feed_fanout_pending row, each batch stores the last
+ * follower reached in it and the row is deleted when the fan-out is done. Fan-outs cut short by a
+ * restart or a failure are resumed from there on startup.
+ */
+@Singleton
+public class FeedFanout {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FeedFanout.class);
+
+  /** The follower count up to which an article is fanned out synchronously. */
+  public static final int SYNC_MAX_FOLLOWERS = Config.getInt("feed.fanout.syncMaxFollowers", 1000);
+
+  private static final int BATCH_SIZE = Config.getInt("feed.fanout.batchSize", 1000);
+  private static final int THREADS = Config.getInt("feed.fanout.threads", 2);
+  private static final long SHUTDOWN_SECONDS = Config.getLong("feed.fanout.shutdownSeconds", 10);
+
+  /**
+   * Insert one batch of followers, record the last follower id of the batch as the article's
+   * progress and return it.
+   */
+  private static final String BATCH_SQL =
+      """
+      WITH
+          batch AS (
+              SELECT from_user_id
+              FROM realworld.follow
+              WHERE to_user_id = ? AND from_user_id > ?
+              ORDER BY from_user_id
+              LIMIT ?
+          ),
+          fanned_out AS (
+              INSERT INTO realworld.feed_entry(user_id, created_at, article_id)
+              SELECT from_user_id, ?, ?
+              FROM batch
+              ON CONFLICT DO NOTHING
+          ),
+          last AS (
+              SELECT from_user_id
+              FROM batch
+              ORDER BY from_user_id DESC
+              LIMIT 1
+          ),
+          progressed AS (
+              UPDATE realworld.feed_fanout_pending
+              SET after_user_id = last.from_user_id
+              FROM last
+              WHERE article_id = ?
+          )
+      SELECT from_user_id
+      FROM last
+      """;
+
+  private static final String DONE_SQL =
+      """
+      DELETE FROM realworld.feed_fanout_pending
+      WHERE article_id = ?
+      """;
+
+  private static final String PENDING_SQL =
+      """
+      SELECT
+          realworld.feed_fanout_pending.article_id,
+          realworld.feed_fanout_pending.after_user_id,
+          realworld.article.user_id,
+          realworld.article.created_at
+      FROM realworld.feed_fanout_pending
+      JOIN realworld.article ON realworld.article.id = realworld.feed_fanout_pending.article_id
+      """;
+
+  private final ExecutorService executor =
+      Executors.newFixedThreadPool(
+          THREADS, Thread.ofPlatform().daemon().name("feed-fanout-", 0).factory());
+
+  /** Resume the fan-outs left pending by the previous run. */
+  @PostConstruct
+  void resume() {
+    var resumed = new int[1];
+    DB.sqlQuery(PENDING_SQL)
+        .findEachRow(
+            (rs, row) -> {
+              var articleId = rs.getObject(1, UUID.class);
+              var after = rs.getObject(2, UUID.class);
+              var authorId = rs.getObject(3, UUID.class);
+              var createdAt = rs.getTimestamp(4);
+              executor.execute(() -> run(authorId, articleId, createdAt, after));
+              resumed[0]++;
+            });
+    if (resumed[0] > 0) {
+      LOG.info("Resuming {} pending feed fan-outs", resumed[0]);
+    }
+  }
+
+  /**
+   * Let the running and queued fan-outs finish, those still running after {@code
+   * feed.fanout.shutdownSeconds} stay pending and resume on the next start.
+   */
+  @PreDestroy
+  void stop() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+        LOG.info("Leaving {} fan-outs pending", executor.shutdownNow().size());
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Fan the article out in the background, its pending row is written by the caller. */
+  public void fanOut(UUID authorId, UUID articleId, Timestamp createdAt) {
+    executor.execute(() -> run(authorId, articleId, createdAt, new UUID(0, 0)));
+  }
+
+  private void run(UUID authorId, UUID articleId, Timestamp createdAt, UUID after) {
+    try {
+      var batches = fanOutNow(authorId, articleId, createdAt, after);
+      LOG.debug("Fanned out article {} in {} batches", articleId, batches);
+    } catch (DataIntegrityException e) {
+      // the article was deleted meanwhile, its entries went with it
+      LOG.debug("Stopped fan-out of article {}", articleId, e);
+    } catch (RuntimeException e) {
+      LOG.warn("Fan-out of article {} failed", articleId, e);
+    }
+  }
+
+  /**
+   * Fan the article out on the calling thread to the followers with ids above {@code after},
+   * clear its pending row and return the number of batches.
+   */
+  public int fanOutNow(UUID authorId, UUID articleId, Timestamp createdAt, UUID after) {
+    var batches = 0;
+    while (true) {
+      Optional<UUID> last =
+          DB.sqlQuery(BATCH_SQL)
+              .setParameters(authorId, after, BATCH_SIZE, createdAt, articleId, articleId)
+              .mapToScalar(UUID.class)
+              .findOneOrEmpty();
+      if (last.isEmpty()) {
+        DB.sqlUpdate(DONE_SQL).setParameter(articleId).execute();
+        return batches;
+      }
+      batches++;
+      after = last.get();
+    }
+  }
+}
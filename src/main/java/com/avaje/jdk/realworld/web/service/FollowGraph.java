@@ -0,0 +1,498 @@
+package com.avaje.jdk.realworld.web.service;
+
+import io.avaje.config.Config;
+import io.avaje.inject.PostConstruct;
+import io.avaje.inject.PreDestroy;
+import io.ebean.DB;
+import jakarta.inject.Singleton;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process copy of the follow table, answering the {@code following} flag of rendered authors
+ * without a query.
+ *
+ * <p>User ids map to int ordinals through an open addressing table and each user's followees are a
+ * sorted int array, so an edge costs four bytes and a lookup is a hash probe and a binary search.
+ * Reads are optimistic against a StampedLock, writes replace the changed array.
+ *
+ * <p>Follows and unfollows made by this instance are applied once committed. The graph is loaded
+ * from the table at startup. Every {@code follows.refresh.millis} the follow_change rows that a
+ * trigger writes for each follow insert and delete are polled, and the touched pairs are set to
+ * their current state in the follow table, which bounds how long the changes of other instances go
+ * unseen. Applying the current state makes a pair read twice harmless, so each poll reads back
+ * {@code follows.refresh.lookbackMillis} to cover changes that committed late.
+ *
+ * <p>Change rows older than {@code follows.change.retention} seconds are pruned, an instance that
+ * could not poll for half that long loads the table again.
+ */
+@Singleton
+public class FollowGraph {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FollowGraph.class);
+
+  private static final long REFRESH_MILLIS = Config.getLong("follows.refresh.millis", 1000);
+  private static final long LOOKBACK_MILLIS =
+      Config.getLong("follows.refresh.lookbackMillis", 5000);
+  private static final long RETENTION = Config.getLong("follows.change.retention", 3600);
+  private static final long PRUNE_MILLIS = 60_000;
+  private static final int FETCH_SIZE = 10_000;
+
+  private static final String LOAD_SQL = "SELECT from_user_id, to_user_id FROM realworld.follow";
+
+  private static final String NOW_SQL = "SELECT statement_timestamp()";
+
+  /**
+   * The pairs changed since the given time with their current state, and the time of the poll. A
+   * single row with null pairs when nothing changed.
+   */
+  static final String CHANGES_SQL =
+      """
+      WITH polled AS (
+          SELECT statement_timestamp() AS polled_at
+      )
+      SELECT
+          polled.polled_at,
+          changed.from_user_id,
+          changed.to_user_id,
+          exists(
+              SELECT 1
+              FROM realworld.follow
+              WHERE from_user_id = changed.from_user_id AND to_user_id = changed.to_user_id
+          ) AS following
+      FROM polled
+      LEFT JOIN (
+          SELECT DISTINCT from_user_id, to_user_id
+          FROM realworld.follow_change
+          WHERE changed_at > ?
+      ) changed ON true
+      """;
+
+  private static final String PRUNE_SQL =
+      """
+      DELETE FROM realworld.follow_change
+      WHERE changed_at < statement_timestamp() - make_interval(secs => ?)
+      """;
+
+  private final StampedLock lock = new StampedLock();
+
+  /** Guarded by the lock, replaced whole by a reload. */
+  private Graph graph = new Graph(16);
+
+  /** Changes made while a reload reads the table, replayed onto the loaded graph. */
+  private List<Change> pending;
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().daemon().name("follow-graph").factory());
+
+  /** The change time the next poll reads from, only used on the executor after startup. */
+  private Timestamp since;
+
+  private long refreshedAt;
+  private long prunedAt;
+
+  record Change(UUID from, UUID to, boolean follow) {}
+
+  @PostConstruct
+  void start() {
+    load();
+    if (REFRESH_MILLIS > 0) {
+      executor.scheduleWithFixedDelay(
+          this::refresh, REFRESH_MILLIS, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void refresh() {
+    try {
+      var now = System.currentTimeMillis();
+      if (now - refreshedAt > RETENTION * 500) {
+        LOG.info("Follow changes may be pruned since the last refresh, loading the table");
+        load();
+      } else {
+        applyChanges();
+      }
+      if (now - prunedAt > PRUNE_MILLIS) {
+        DB.sqlUpdate(PRUNE_SQL).setParameter(RETENTION).execute();
+        prunedAt = now;
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to refresh follows", e);
+    }
+  }
+
+  /** Set the pairs changed since the last poll to their current state. */
+  private void applyChanges() {
+    var changes = new ArrayList<Change>();
+    var polledAt = new Timestamp[1];
+    DB.sqlQuery(CHANGES_SQL)
+        .setParameter(since)
+        .findEachRow((rs, row) -> polledAt[0] = polled(rs, changes));
+    applyPolled(polledAt[0], changes);
+  }
+
+  /** Add the change of a {@link #CHANGES_SQL} row, if any, and return the time of the poll. */
+  static Timestamp polled(ResultSet rs, List<Change> changes) throws SQLException {
+    var from = rs.getObject(2, UUID.class);
+    if (from != null) {
+      changes.add(new Change(from, rs.getObject(3, UUID.class), rs.getBoolean(4)));
+    }
+    return rs.getTimestamp(1);
+  }
+
+  /** Apply the changes of a poll, the next poll reads from its time less the lookback. */
+  void applyPolled(Timestamp polledAt, List<Change> changes) {
+    if (!changes.isEmpty()) {
+      var stamp = lock.writeLock();
+      try {
+        changes.forEach(graph::apply);
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+      LOG.debug("Applied {} follow changes", changes.size());
+    }
+    since = lookback(polledAt);
+    refreshedAt = System.currentTimeMillis();
+  }
+
+  private static Timestamp lookback(Timestamp time) {
+    return new Timestamp(time.getTime() - LOOKBACK_MILLIS);
+  }
+
+  @PreDestroy
+  void stop() {
+    executor.shutdownNow();
+  }
+
+  private void load() {
+    var stamp = lock.writeLock();
+    try {
+      pending = new ArrayList<>();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+    var start = System.nanoTime();
+    var builder = new Builder();
+    Graph loaded = null;
+    try {
+      var loadedAt = DB.sqlQuery(NOW_SQL).mapToScalar(Timestamp.class).findOne();
+      DB.sqlQuery(LOAD_SQL)
+          .setBufferFetchSizeHint(FETCH_SIZE)
+          .findEachRow(
+              (rs, row) -> builder.add(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+      loaded = builder.build();
+      since = lookback(loadedAt);
+      refreshedAt = System.currentTimeMillis();
+    } finally {
+      stamp = lock.writeLock();
+      try {
+        if (loaded != null) {
+          pending.forEach(loaded::apply);
+          graph = loaded;
+        }
+        pending = null;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+    LOG.debug(
+        "Loaded {} follows of {} users in {}ms, {} bytes",
+        loaded.edges(),
+        loaded.users(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        loaded.bytes());
+  }
+
+  /** Return true when {@code from} follows {@code to}, false for an anonymous viewer. */
+  public boolean following(UUID from, UUID to) {
+    if (from == null) {
+      return false;
+    }
+    var stamp = lock.tryOptimisticRead();
+    var following = graph.following(from, to);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        following = graph.following(from, to);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return following;
+  }
+
+  /** Return those of the given users that {@code from} follows, in the given order. */
+  public List<UUID> followed(UUID from, Collection<UUID> users) {
+    if (from == null || users.isEmpty()) {
+      return List.of();
+    }
+    var stamp = lock.tryOptimisticRead();
+    var followed = graph.followed(from, users);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        followed = graph.followed(from, users);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return followed;
+  }
+
+  /** Record a committed follow. */
+  public void follow(UUID from, UUID to) {
+    change(new Change(from, to, true));
+  }
+
+  /** Record a committed unfollow. */
+  public void unfollow(UUID from, UUID to) {
+    change(new Change(from, to, false));
+  }
+
+  private void change(Change change) {
+    var stamp = lock.writeLock();
+    try {
+      graph.apply(change);
+      if (pending != null) {
+        pending.add(change);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public int users() {
+    return read(Graph::users);
+  }
+
+  public long edges() {
+    return read(Graph::edges);
+  }
+
+  /** Approximate heap footprint of the ordinal table and adjacency arrays. */
+  public long bytes() {
+    return read(Graph::bytes);
+  }
+
+  private <T> T read(Function<Graph, T> reader) {
+    var stamp = lock.readLock();
+    try {
+      return reader.apply(graph);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * The ordinal table and the adjacency arrays. Readers may run concurrently with a writer under an
+   * optimistic stamp, so every read bounds checks against the arrays it reads and a torn result is
+   * discarded by the failed validation.
+   */
+  static final class Graph {
+
+    private static final int[] NONE = {};
+
+    /** msb, lsb and ordinal + 1 of each slot, an ordinal word of 0 marks an empty slot. */
+    private long[] table;
+
+    private int[][] followees;
+    private int users;
+    private long edges;
+
+    Graph(int expectedUsers) {
+      table = new long[3 * capacity(expectedUsers)];
+      followees = new int[Math.max(16, expectedUsers)][];
+    }
+
+    /** A power of two slot count keeping the table at most three quarters full. */
+    private static int capacity(int users) {
+      return Integer.highestOneBit(Math.max(16, users * 4 / 3) - 1) << 1;
+    }
+
+    private static int hash(long msb, long lsb) {
+      var h = Long.hashCode(msb ^ lsb) * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+    /** The ordinal of the user or -1 if the user has no follow edges. */
+    int ordinal(UUID id) {
+      var t = table;
+      var msb = id.getMostSignificantBits();
+      var lsb = id.getLeastSignificantBits();
+      var mask = t.length / 3 - 1;
+      for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+        var ordinal = t[3 * i + 2];
+        if (ordinal == 0) {
+          return -1;
+        }
+        if (t[3 * i] == msb && t[3 * i + 1] == lsb) {
+          return (int) ordinal - 1;
+        }
+      }
+    }
+
+    int ordinalOrAdd(UUID id) {
+      var ordinal = ordinal(id);
+      if (ordinal >= 0) {
+        return ordinal;
+      }
+      if ((users + 1) * 4L > table.length / 3 * 3L) {
+        var grown = new long[table.length * 2];
+        for (int i = 0; i < table.length; i += 3) {
+          if (table[i + 2] != 0) {
+            insert(grown, table[i], table[i + 1], table[i + 2]);
+          }
+        }
+        table = grown;
+      }
+      insert(table, id.getMostSignificantBits(), id.getLeastSignificantBits(), users + 1L);
+      if (users == followees.length) {
+        followees = Arrays.copyOf(followees, users * 2);
+      }
+      return users++;
+    }
+
+    private static void insert(long[] t, long msb, long lsb, long ordinalWord) {
+      var mask = t.length / 3 - 1;
+      var i = hash(msb, lsb) & mask;
+      while (t[3 * i + 2] != 0) {
+        i = (i + 1) & mask;
+      }
+      t[3 * i] = msb;
+      t[3 * i + 1] = lsb;
+      t[3 * i + 2] = ordinalWord;
+    }
+
+    private int[] followees(int ordinal) {
+      var f = followees;
+      if (ordinal >= f.length || f[ordinal] == null) {
+        return NONE;
+      }
+      return f[ordinal];
+    }
+
+    boolean following(UUID from, UUID to) {
+      var f = ordinal(from);
+      if (f < 0) {
+        return false;
+      }
+      var t = ordinal(to);
+      return t >= 0 && Arrays.binarySearch(followees(f), t) >= 0;
+    }
+
+    List<UUID> followed(UUID from, Collection<UUID> users) {
+      var f = ordinal(from);
+      if (f < 0) {
+        return List.of();
+      }
+      var adjacent = followees(f);
+      var followed = new ArrayList<UUID>(Math.min(users.size(), adjacent.length));
+      for (var user : users) {
+        var t = ordinal(user);
+        if (t >= 0 && Arrays.binarySearch(adjacent, t) >= 0) {
+          followed.add(user);
+        }
+      }
+      return followed;
+    }
+
+    void apply(Change change) {
+      var from = ordinalOrAdd(change.from());
+      var to = ordinalOrAdd(change.to());
+      var adjacent = followees(from);
+      var i = Arrays.binarySearch(adjacent, to);
+      if (change.follow() && i < 0) {
+        var insertAt = -i - 1;
+        var grown = new int[adjacent.length + 1];
+        System.arraycopy(adjacent, 0, grown, 0, insertAt);
+        grown[insertAt] = to;
+        System.arraycopy(adjacent, insertAt, grown, insertAt + 1, adjacent.length - insertAt);
+        followees[from] = grown;
+        edges++;
+      } else if (!change.follow() && i >= 0) {
+        var shrunk = new int[adjacent.length - 1];
+        System.arraycopy(adjacent, 0, shrunk, 0, i);
+        System.arraycopy(adjacent, i + 1, shrunk, i, shrunk.length - i);
+        followees[from] = shrunk.length == 0 ? null : shrunk;
+        edges--;
+      }
+    }
+
+    int users() {
+      return users;
+    }
+
+    long edges() {
+      return edges;
+    }
+
+    /** Array payloads plus 16 byte headers, with compressed references. */
+    long bytes() {
+      var bytes = 16 + table.length * 8L + 16 + followees.length * 4L;
+      for (int i = 0; i < users; i++) {
+        if (followees[i] != null) {
+          bytes += (16 + followees[i].length * 4L + 7) & ~7;
+        }
+      }
+      return bytes;
+    }
+  }
+
+  /** Bulk load, appending the edges unordered and sorting each user's followees once. */
+  static final class Builder {
+
+    private final Graph graph = new Graph(1024);
+    private int[][] lists = new int[1024][];
+    private int[] counts = new int[1024];
+
+    void add(UUID from, UUID to) {
+      var f = graph.ordinalOrAdd(from);
+      var t = graph.ordinalOrAdd(to);
+      if (f >= lists.length) {
+        lists = Arrays.copyOf(lists, lists.length * 2);
+        counts = Arrays.copyOf(counts, counts.length * 2);
+      }
+      var list = lists[f];
+      if (list == null) {
+        list = lists[f] = new int[4];
+      } else if (counts[f] == list.length) {
+        list = lists[f] = Arrays.copyOf(list, list.length * 2);
+      }
+      list[counts[f]++] = t;
+    }
+
+    Graph build() {
+      for (int f = 0; f < graph.users; f++) {
+        if (lists[f] == null) {
+          continue;
+        }
+        var adjacent = Arrays.copyOf(lists[f], counts[f]);
+        lists[f] = null;
+        Arrays.sort(adjacent);
+        var distinct = 0;
+        for (int i = 0; i < adjacent.length; i++) {
+          if (i == 0 || adjacent[i] != adjacent[i - 1]) {
+            adjacent[distinct++] = adjacent[i];
+          }
+        }
+        graph.followees[f] =
+            distinct == adjacent.length ? adjacent : Arrays.copyOf(adjacent, distinct);
+        graph.edges += distinct;
+      }
+      return graph;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.avaje.jdk.realworld.web.service;
+
+import com.avaje.jdk.realworld.metrics.ReplicaReads;
+import io.avaje.config.Config;
+import io.avaje.inject.PostConstruct;
+import io.avaje.inject.PreDestroy;
+import io.ebean.DB;
+import io.ebean.TxScope;
+import jakarta.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide tag name to id dictionary, loaded at startup and updated as tags are created.
+ *
+ * <p>Tags are never deleted so a cached mapping can't go stale. Tags created by other instances are
+ * picked up on lookup misses and by the periodic reload. A name found in neither is remembered as
+ * missing for {@code tags.miss.ttlMillis}, so repeated lookups of unknown tags don't each query the
+ * table. Missing names are forgotten on reload and when this instance creates the tag.
+ */
+@Singleton
+public class TagDictionary {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TagDictionary.class);
+
+  private static final long RELOAD_INTERVAL = Config.getLong("tags.reload.interval", 300);
+  private static final long MISS_TTL_MILLIS = Config.getLong("tags.miss.ttlMillis", 5000);
+  private static final int MAX_MISSES = Config.getInt("tags.miss.maxSize", 10_000);
+
+  private static final String UPSERT_SQL =
+      """
+      INSERT INTO realworld.tag(name)
+      SELECT unnest(?::text[])
+      ON CONFLICT (name) DO UPDATE SET name = EXCLUDED.name
+      RETURNING id, name
+      """;
+
+  private final ConcurrentHashMap<String, UUID> ids = new ConcurrentHashMap<>();
+
+  /** Names found in no tag row. */
+  private final BoundedCache<String, Boolean> misses =
+      new BoundedCache<>(MAX_MISSES, MISS_TTL_MILLIS);
+
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().daemon().name("tag-dictionary").factory());
+
+  @PostConstruct
+  void start() {
+    load();
+    if (RELOAD_INTERVAL > 0) {
+      executor.scheduleWithFixedDelay(
+          this::reload, RELOAD_INTERVAL, RELOAD_INTERVAL, TimeUnit.SECONDS);
+    }
+  }
+
+  private void reload() {
+    try {
+      load();
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to reload tags", e);
+    }
+  }
+
+  @PreDestroy
+  void stop() {
+    executor.shutdownNow();
+  }
+
+  private void load() {
+    for (var row : DB.sqlQuery("SELECT id, name FROM realworld.tag").findList()) {
+      ids.put(row.getString("name"), row.getUUID("id"));
+    }
+    misses.clear();
+  }
+
+  /** All known tag names. */
+  public List<String> names() {
+    return List.copyOf(ids.keySet());
+  }
+
+  /** Return the id of the tag, or null when no such tag exists. */
+  public UUID id(String name) {
+    var id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+    if (misses.get(name) != null) {
+      return null;
+    }
+    var observed = misses.generation();
+    // on the primary, a tag missing from a lagging replica would be remembered as missing
+    try (var primary = ReplicaReads.primary()) {
+      id =
+          DB.sqlQuery("SELECT id FROM realworld.tag WHERE name = ?")
+              .setParameter(name)
+              .mapToScalar(UUID.class)
+              .findOne();
+    }
+    if (id != null) {
+      ids.put(name, id);
+    } else {
+      // not remembered when the tag was created or the dictionary reloaded meanwhile
+      misses.put(name, Boolean.TRUE, observed);
+    }
+    return id;
+  }
+
+  /**
+   * Return the ids of the given tag names, creating unknown tags with one batched upsert.
+   *
+   * <p>The upsert runs in its own transaction so only committed tags enter the dictionary.
+   */
+  public List<UUID> resolve(Collection<String> names) {
+    var distinct = new LinkedHashSet<>(names);
+    var unknown = distinct.stream().filter(n -> !ids.containsKey(n)).toList();
+    if (!unknown.isEmpty()) {
+      try (var txn = DB.beginTransaction(TxScope.requiresNew())) {
+        var rows = DB.sqlQuery(UPSERT_SQL).setArrayParameter(1, unknown).findList();
+        txn.commit();
+        for (var row : rows) {
+          ids.put(row.getString("name"), row.getUUID("id"));
+          misses.evict(row.getString("name"));
+        }
+      }
+    }
+
+    var result = new ArrayList<UUID>(distinct.size());
+    for (var name : distinct) {
+      result.add(ids.get(name));
+    }
+    return result;
+  }
+}
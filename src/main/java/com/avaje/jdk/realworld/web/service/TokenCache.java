@@ -0,0 +1,68 @@
+package com.avaje.jdk.realworld.web.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Bounded cache of already verified tokens keyed by the SHA-256 digest of the token.
+ *
+ * <p>Entries live until the JWT expiry or the configured ttl, whichever comes first. The ttl bounds
+ * how long a user deleted on another instance can still authenticate here.
+ */
+final class TokenCache {
+
+  private final BoundedCache<String, UUID> entries;
+
+  TokenCache(int maxSize, long ttlSeconds) {
+    this.entries = new BoundedCache<>(maxSize, ttlSeconds * 1000);
+  }
+
+  /** Return the cached user id for the token digest or null if not cached or expired. */
+  UUID get(String digest) {
+    return entries.get(digest);
+  }
+
+  /**
+   * Cache a verified token. Skipped when a user was evicted after {@code observedGeneration} was
+   * read, so a token checked concurrently with a delete is never cached.
+   */
+  void put(String digest, UUID userId, Instant tokenExpiry, long observedGeneration) {
+    var notAfter = tokenExpiry == null ? Long.MAX_VALUE : tokenExpiry.toEpochMilli();
+    entries.put(digest, userId, notAfter, observedGeneration);
+  }
+
+  /** Remove every entry of the given user. */
+  void evictUser(UUID userId) {
+    entries.evictIf(userId::equals);
+  }
+
+  long generation() {
+    return entries.generation();
+  }
+
+  long hits() {
+    return entries.hits();
+  }
+
+  long misses() {
+    return entries.misses();
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  static String digest(String token) {
+    try {
+      var bytes =
+          MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+      return Base64.getEncoder().withoutPadding().encodeToString(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.avaje.jdk.realworld.web.service;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.avaje.jdk.realworld.models.entities.query.QUserEntity;
 import io.avaje.config.Config;
 import jakarta.inject.Singleton;
@@ -18,10 +19,14 @@ public class TokenService {
   private static final String ISSUER = Config.get("jwt.issuer", "memes");
   private static final Algorithm algorithm =
       Config.get("jwt.secret.key", "secretkey").transform(Algorithm::HMAC256);
+  private static final int CACHE_MAX_SIZE = Config.getInt("jwt.cache.maxSize", 10_000);
+  private static final long CACHE_TTL = Config.getLong("jwt.cache.ttl", 60);
 
   private final JWTVerifier verifier =
       JWT.require(algorithm).withIssuer(ISSUER).withClaim(USER_ID, (c, d) -> true).build();
 
+  private final TokenCache cache = new TokenCache(CACHE_MAX_SIZE, CACHE_TTL);
+
   public String getJWT(UUID request) {
 
     return JWT.create()
@@ -33,7 +38,15 @@ public class TokenService {
   }
 
   public UUID authenticateToken(String token) {
-    var userId = UUID.fromString(verifier.verify(token).getClaim(USER_ID).asString());
+    var digest = TokenCache.digest(token);
+    var cached = cache.get(digest);
+    if (cached != null) {
+      return cached;
+    }
+
+    var generation = cache.generation();
+    var jwt = verify(token);
+    var userId = UUID.fromString(jwt.getClaim(USER_ID).asString());
 
     if (new QUserEntity().id.eq(userId).exists()) {
       // LOG.info("Extracted info for user {}", userId);
@@ -41,6 +54,29 @@ public class TokenService {
       return null;
     }
 
+    cache.put(digest, userId, jwt.getExpiresAtAsInstant(), generation);
     return userId;
   }
+
+  /** Check the signature, issuer and expiry of the token. */
+  DecodedJWT verify(String token) {
+    return verifier.verify(token);
+  }
+
+  /** Drop cached tokens of the user so they are verified against the DB again. */
+  public void evictUser(UUID userId) {
+    cache.evictUser(userId);
+  }
+
+  public long cacheHits() {
+    return cache.hits();
+  }
+
+  public long cacheMisses() {
+    return cache.misses();
+  }
+
+  public int cacheSize() {
+    return cache.size();
+  }
 }
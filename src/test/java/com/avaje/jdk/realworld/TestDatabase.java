@@ -0,0 +1,71 @@
+package com.avaje.jdk.realworld;
+
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Connections for the tests that run against Postgres, {@code POSTGRES_URL} as in
+ * application.properties with the migrations applied.
+ *
+ * <p>Those tests are skipped when the database is missing, unless {@code REALWORLD_DB_REQUIRED} is
+ * {@code true}, as it is in CI, in which case they fail instead.
+ */
+public final class TestDatabase {
+
+  public static final boolean REQUIRED =
+      Boolean.parseBoolean(System.getenv("REALWORLD_DB_REQUIRED"));
+
+  /** A table of the latest migration, present once all of them are applied. */
+  private static final String LATEST_MIGRATION = "realworld.follow_change";
+
+  private TestDatabase() {}
+
+  public static String env(String name, String defaultValue) {
+    var value = System.getenv(name);
+    return value == null || value.isBlank() ? defaultValue : value;
+  }
+
+  public static String url() {
+    return env("POSTGRES_URL", "jdbc:postgresql:postgres");
+  }
+
+  public static String username() {
+    return env("POSTGRES_USERNAME", "postgres");
+  }
+
+  public static String password() {
+    return env("POSTGRES_PASSWORD", "postgres");
+  }
+
+  /** Skip the test, or fail it when the database is required. */
+  public static void unavailable(String reason) {
+    if (REQUIRED) {
+      fail(reason + " (REALWORLD_DB_REQUIRED is set)");
+    }
+    assumeTrue(false, reason);
+  }
+
+  /** Connect to the migrated database, skipping or failing the test when there is none. */
+  public static Connection connect() throws SQLException {
+    Connection connection;
+    try {
+      connection = DriverManager.getConnection(url(), username(), password());
+    } catch (SQLException e) {
+      unavailable("no database at " + url() + ": " + e.getMessage());
+      return null;
+    }
+    try (var st = connection.createStatement();
+        var rs = st.executeQuery("select to_regclass('" + LATEST_MIGRATION + "')")) {
+      rs.next();
+      if (rs.getString(1) == null) {
+        connection.close();
+        unavailable("migrations not applied to " + url());
+      }
+    }
+    return connection;
+  }
+}
@@ -0,0 +1,53 @@
+package com.avaje.jdk.realworld.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class BucketsTest {
+
+  @Test
+  void cumulativeCounts() {
+    var buckets = new Buckets(new long[] {10, 100});
+    buckets.record(5);
+    buckets.record(10);
+    buckets.record(50);
+    buckets.record(1000);
+
+    assertArrayEquals(new long[] {2, 3, 4}, buckets.cumulative());
+    assertEquals(1065, buckets.sum());
+  }
+
+  @Test
+  void normalize() {
+    assertEquals(
+        "SELECT id FROM realworld.article WHERE slug = ? AND x > ? LIMIT ?",
+        SqlStats.normalize(
+            "SELECT id\n  FROM realworld.article\n WHERE slug = 'it''s' AND x > 1.5 LIMIT ?"));
+    assertEquals(
+        "[UUID, null, Integer]", SqlStats.shapes(Arrays.asList(UUID.randomUUID(), null, 1)));
+  }
+
+  @Test
+  void routeMetrics() {
+    var route = new RouteMetrics("GET", "/api/articles/{slug}");
+    route.start();
+    route.start();
+    assertEquals(2, route.inFlight());
+
+    route.end(3_000_000, 200, -1, 2048, 1_000_000, 2);
+    route.end(7_000_000, 404, -1, 64, 500_000, 1);
+
+    assertEquals(0, route.inFlight());
+    assertEquals(Map.of(200, 1L, 404, 1L), route.statuses());
+    assertEquals(2, route.latency().cumulative()[Buckets.LATENCY.length]);
+    assertEquals(0, route.requestBytes().cumulative()[Buckets.SIZE.length]);
+    assertEquals(2112, route.responseBytes().sum());
+    assertEquals(1_500_000, route.dbTime().sum());
+    assertEquals(3, route.dbStatements());
+  }
+}
@@ -0,0 +1,21 @@
+package com.avaje.jdk.realworld.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ReplicaReadsTest {
+
+  @Test
+  void primaryInsideReplicaScope() {
+    try (var replica = ReplicaReads.begin()) {
+      assertTrue(ReplicaReads.active());
+      try (var primary = ReplicaReads.primary()) {
+        assertFalse(ReplicaReads.active());
+      }
+      assertTrue(ReplicaReads.active());
+    }
+    assertFalse(ReplicaReads.active());
+  }
+}
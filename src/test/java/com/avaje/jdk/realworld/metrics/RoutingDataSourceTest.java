@@ -0,0 +1,115 @@
+package com.avaje.jdk.realworld.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import com.avaje.jdk.realworld.TestDatabase;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+
+/**
+ * Routing between two Postgres instances, {@code POSTGRES_URL} as the primary and {@code
+ * POSTGRES_REPLICA_URL} as the replica, for example the {@code replica} profile of
+ * docker-compose.yaml. Skipped unless both are reachable and are different servers, failed instead
+ * when {@code REALWORLD_DB_REQUIRED} is set.
+ */
+class RoutingDataSourceTest {
+
+  private static DataSource primary;
+  private static DataSource replica;
+  private static String primaryServer;
+  private static String replicaServer;
+
+  @BeforeAll
+  static void connect() {
+    var replicaUrl = TestDatabase.env("POSTGRES_REPLICA_URL", null);
+    if (replicaUrl == null) {
+      TestDatabase.unavailable("no POSTGRES_REPLICA_URL");
+    }
+    primary = dataSource(TestDatabase.url());
+    replica = dataSource(replicaUrl);
+    try {
+      primaryServer = server(primary);
+      replicaServer = server(replica);
+    } catch (SQLException e) {
+      TestDatabase.unavailable("database not reachable: " + e.getMessage());
+    }
+    if (primaryServer.equals(replicaServer)) {
+      TestDatabase.unavailable("primary and replica are the same server");
+    }
+  }
+
+  private static DataSource dataSource(String url) {
+    var dataSource = new PGSimpleDataSource();
+    dataSource.setURL(url);
+    dataSource.setUser(TestDatabase.username());
+    dataSource.setPassword(TestDatabase.password());
+    return dataSource;
+  }
+
+  /** Identifies the server, a streaming replica shares the system identifier of its primary. */
+  private static String server(DataSource dataSource) throws SQLException {
+    try (var connection = dataSource.getConnection();
+        var st = connection.createStatement();
+        var rs =
+            st.executeQuery(
+                """
+                select system_identifier || '/' || pg_is_in_recovery()
+                    || '/' || coalesce(inet_server_addr()::text, '') || ':' || inet_server_port()
+                from pg_control_system()
+                """)) {
+      rs.next();
+      return rs.getString(1);
+    }
+  }
+
+  private final RoutingDataSource routing = new RoutingDataSource(primary, replica);
+
+  @Test
+  void primaryOutsideScope() throws SQLException {
+    assertEquals(primaryServer, server(routing));
+  }
+
+  @Test
+  void replicaInsideScope() throws SQLException {
+    var replicaCount = ReplicaReads.replicaConnections();
+    try (var reads = ReplicaReads.begin()) {
+      assertEquals(replicaServer, server(routing));
+    }
+    assertEquals(replicaCount + 1, ReplicaReads.replicaConnections());
+    assertEquals(primaryServer, server(routing));
+  }
+
+  @Test
+  void nestedScopeKeepsReplica() throws SQLException {
+    try (var outer = ReplicaReads.begin()) {
+      try (var inner = ReplicaReads.begin()) {
+        assertEquals(replicaServer, server(routing));
+      }
+      assertEquals(replicaServer, server(routing));
+    }
+    assertNotEquals(replicaServer, server(routing));
+  }
+
+  @Test
+  void otherThreadsReadPrimary() throws Exception {
+    try (var reads = ReplicaReads.begin()) {
+      var other = new String[1];
+      var thread =
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    try {
+                      other[0] = server(routing);
+                    } catch (SQLException e) {
+                      throw new IllegalStateException(e);
+                    }
+                  });
+      thread.join();
+      assertEquals(primaryServer, other[0]);
+    }
+  }
+}
@@ -1,9 +1,11 @@
 package com.avaje.jdk.realworld.security;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 
+import com.avaje.jdk.realworld.metrics.ReplicaReads;
 import com.avaje.jdk.realworld.web.service.TokenService;
 import io.avaje.jex.http.Context;
 import java.util.Set;
@@ -32,4 +34,32 @@ class AuthFilterTest {
           assertTrue(true);
         });
   }
+
+  @Test
+  void getOfReplicaRouteReadsReplica() {
+    doReturn(Set.of(AppRole.ANYONE)).when(context).routeRoles();
+    doReturn("GET").when(context).method();
+    doReturn("/api/tags").when(context).path();
+
+    filter.authFilter(context, () -> assertTrue(ReplicaReads.active()));
+    assertFalse(ReplicaReads.active());
+  }
+
+  @Test
+  void currentUserReadsPrimary() {
+    doReturn(Set.of(AppRole.ANYONE)).when(context).routeRoles();
+    doReturn("GET").when(context).method();
+    doReturn("/api/user").when(context).path();
+
+    filter.authFilter(context, () -> assertFalse(ReplicaReads.active()));
+  }
+
+  @Test
+  void writeReadsPrimary() {
+    doReturn(Set.of(AppRole.ANYONE)).when(context).routeRoles();
+    doReturn("POST").when(context).method();
+    doReturn("/api/articles").when(context).path();
+
+    filter.authFilter(context, () -> assertFalse(ReplicaReads.active()));
+  }
 }
@@ -0,0 +1,54 @@
+package com.avaje.jdk.realworld.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class RecentWritesTest {
+
+  private final RecentWrites writes = new RecentWrites(2, 60_000);
+
+  @Test
+  void pinnedAfterWrite() {
+    var userId = UUID.randomUUID();
+
+    assertFalse(writes.pinned(userId));
+    writes.wrote(userId);
+
+    assertTrue(writes.pinned(userId));
+    assertFalse(writes.pinned(UUID.randomUUID()));
+  }
+
+  @Test
+  void expired() {
+    var expiring = new RecentWrites(2, 0);
+    var userId = UUID.randomUUID();
+    expiring.wrote(userId);
+
+    assertFalse(expiring.pinned(userId));
+    assertEquals(0, expiring.size());
+  }
+
+  @Test
+  void bounded() {
+    var last = UUID.randomUUID();
+    writes.wrote(UUID.randomUUID());
+    writes.wrote(UUID.randomUUID());
+    writes.wrote(last);
+
+    assertEquals(2, writes.size());
+    assertTrue(writes.pinned(last));
+  }
+
+  @Test
+  void replicaPaths() {
+    assertTrue(JWTAuthFilter.replicaPath("/api/articles"));
+    assertTrue(JWTAuthFilter.replicaPath("/api/articles/how-to/comments"));
+    assertTrue(JWTAuthFilter.replicaPath("/api/profiles/jake"));
+    assertTrue(JWTAuthFilter.replicaPath("/api/tags"));
+    assertFalse(JWTAuthFilter.replicaPath("/api/user"));
+  }
+}
@@ -0,0 +1,20 @@
+package com.avaje.jdk.realworld.web;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class ArticleControllerTest {
+
+  @Test
+  void pageLimits() {
+    assertDoesNotThrow(() -> ArticleController.checkPage(1, 0));
+    assertDoesNotThrow(() -> ArticleController.checkPage(100, 40));
+
+    assertThrows(IllegalArgumentException.class, () -> ArticleController.checkPage(0, 0));
+    assertThrows(IllegalArgumentException.class, () -> ArticleController.checkPage(-1, 0));
+    assertThrows(IllegalArgumentException.class, () -> ArticleController.checkPage(101, 0));
+    assertThrows(IllegalArgumentException.class, () -> ArticleController.checkPage(20, -1));
+  }
+}
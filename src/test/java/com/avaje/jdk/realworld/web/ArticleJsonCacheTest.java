@@ -0,0 +1,50 @@
+package com.avaje.jdk.realworld.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.avaje.jsonb.Jsonb;
+import java.sql.Timestamp;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ArticleJsonCacheTest {
+
+  private static final Timestamp AT = Timestamp.valueOf("2026-01-01 00:00:00");
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> parse(String json) {
+    return (Map<String, Object>) Jsonb.builder().build().type(Object.class).fromJson(json);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void renderMergesViewerState() {
+    // the shape load() leaves: both objects without their closing brace
+    var entry =
+        new ArticleJsonCache.Entry(
+            AT, AT, "{\"slug\": \"how-to\", \"tagList\": [\"a\"]", "{\"username\": \"jake\"");
+
+    var json = parse(entry.render(new ArticleJsonCache.ArticleView(null, true, false, 3)));
+
+    var article = (Map<String, Object>) json.get("article");
+    var author = (Map<String, Object>) article.get("author");
+    assertEquals("how-to", article.get("slug"));
+    assertEquals(false, article.get("favorited"));
+    assertEquals(3, ((Number) article.get("favoritesCount")).intValue());
+    assertEquals("jake", author.get("username"));
+    assertEquals(true, author.get("following"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void renderEmptyTagsAndNotFollowing() {
+    var entry = new ArticleJsonCache.Entry(AT, AT, "{\"tagList\": []", "{\"bio\": null");
+
+    var json = parse(entry.render(new ArticleJsonCache.ArticleView(null, false, true, 0)));
+
+    var article = (Map<String, Object>) json.get("article");
+    assertEquals(true, article.get("favorited"));
+    assertEquals(0, ((Number) article.get("favoritesCount")).intValue());
+    assertEquals(false, ((Map<String, Object>) article.get("author")).get("following"));
+  }
+}
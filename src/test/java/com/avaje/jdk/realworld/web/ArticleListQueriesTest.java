@@ -0,0 +1,231 @@
+package com.avaje.jdk.realworld.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.avaje.jdk.realworld.TestDatabase;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class ArticleListQueriesTest {
+
+  private static final int ARTICLES = 72;
+  private static final int LIMIT = 3;
+
+  private final ArticleListQueries queries = new ArticleListQueries(null);
+
+  /** A seeded article and the filters it matches. */
+  private record Seeded(
+      UUID id, Instant createdAt, boolean tagged, boolean favorited, boolean byA) {
+
+    boolean matches(int variant) {
+      return ((variant & ArticleListQueries.TAG) == 0 || tagged)
+          && ((variant & ArticleListQueries.FAVORITED) == 0 || favorited)
+          && ((variant & ArticleListQueries.AUTHOR) == 0 || byA);
+    }
+  }
+
+  @Test
+  void allVariants() {
+    var cursor = new ArticleCursor(Instant.now(), UUID.randomUUID());
+    for (int variant = 0; variant < ArticleListQueries.VARIANTS; variant++) {
+      var tag = (variant & ArticleListQueries.TAG) != 0;
+      var favorited = (variant & ArticleListQueries.FAVORITED) != 0;
+      var author = (variant & ArticleListQueries.AUTHOR) != 0;
+      for (var keyset : new boolean[] {false, true}) {
+        var sql = queries.sql(variant, keyset);
+        var params =
+            ArticleListQueries.parameters(
+                tag ? UUID.randomUUID() : null,
+                favorited ? UUID.randomUUID() : null,
+                author ? UUID.randomUUID() : null,
+                keyset ? cursor : null,
+                20,
+                0);
+
+        var message = "variant " + variant + " keyset " + keyset;
+        assertEquals(placeholders(sql), params.size(), message);
+
+        var conditions = Integer.bitCount(variant) + (keyset ? 1 : 0);
+        var filter = filterClause(sql);
+        assertEquals(conditions == 0 ? 0 : 1, topLevelCount(filter, "WHERE"), message);
+        assertEquals(Math.max(0, conditions - 1), topLevelCount(filter, "AND"), message);
+        assertEquals(tag, filter.contains("realworld.article_tag"), message);
+        assertEquals(favorited, filter.contains("realworld.favorite"), message);
+        assertEquals(!keyset, sql.contains("OFFSET ?"), message);
+      }
+    }
+  }
+
+  /**
+   * Runs every variant in both forms against articles seeded in the database of
+   * application.properties and checks the page's rows, see {@link TestDatabase} for when it's
+   * skipped. The seeded rows are rolled back.
+   */
+  @Test
+  void executeAllVariants() throws SQLException {
+    try (var connection = TestDatabase.connect()) {
+      connection.setAutoCommit(false);
+      try {
+        var seed = UUID.randomUUID();
+        var authorA = UUID.randomUUID();
+        var authorB = UUID.randomUUID();
+        var reader = UUID.randomUUID();
+        var tag = UUID.randomUUID();
+        for (var user : List.of(authorA, authorB, reader)) {
+          execute(
+              connection,
+              "insert into realworld.user(id, username, password_hash, email)"
+                  + " values (?, ?, '\\x00', ?)",
+              user,
+              "list-" + user,
+              "list-" + user + "@example.com");
+        }
+        execute(
+            connection, "insert into realworld.tag(id, name) values (?, ?)", tag, "list-" + seed);
+
+        // newer than any existing article so they lead the unfiltered pages
+        var newest = Instant.now().plus(365, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MICROS);
+        var articles = new ArrayList<Seeded>();
+        for (int i = 0; i < ARTICLES; i++) {
+          // pairs share created_at so the id breaks the tie
+          var article =
+              new Seeded(
+                  UUID.randomUUID(), newest.minusSeconds(i / 2), i % 3 == 0, i % 4 < 2, i % 2 == 0);
+          articles.add(article);
+          execute(
+              connection,
+              "insert into realworld.article(id, user_id, slug, title, description, body,"
+                  + " created_at) values (?, ?, ?, 'title', 'description', 'body', ?)",
+              article.id(),
+              article.byA() ? authorA : authorB,
+              "list-" + article.id(),
+              Timestamp.from(article.createdAt()));
+          if (article.tagged()) {
+            execute(
+                connection,
+                "insert into realworld.article_tag(article_id, tag_id) values (?, ?)",
+                article.id(),
+                tag);
+          }
+          if (article.favorited()) {
+            execute(
+                connection,
+                "insert into realworld.favorite(article_id, user_id) values (?, ?)",
+                article.id(),
+                reader);
+          }
+        }
+        // uuids compare as unsigned bytes in postgres, as their text does
+        articles.sort(
+            Comparator.comparing(Seeded::createdAt)
+                .thenComparing(article -> article.id().toString())
+                .reversed());
+
+        for (int variant = 0; variant < ArticleListQueries.VARIANTS; variant++) {
+          var current = variant;
+          var filtered = articles.stream().filter(article -> article.matches(current)).toList();
+          var first = filtered.get(0);
+          var expected = filtered.subList(1, 1 + LIMIT).stream().map(Seeded::id).toList();
+          var tagged = (variant & ArticleListQueries.TAG) != 0;
+          var favorited = (variant & ArticleListQueries.FAVORITED) != 0;
+          var byA = (variant & ArticleListQueries.AUTHOR) != 0;
+          var message = "variant " + variant;
+
+          var offsetPage =
+              page(
+                  connection,
+                  queries.sql(variant, false),
+                  ArticleListQueries.parameters(
+                      tagged ? tag : null,
+                      favorited ? reader : null,
+                      byA ? authorA : null,
+                      null,
+                      LIMIT,
+                      1));
+          assertEquals(expected, offsetPage, message + " offset");
+
+          var keysetPage =
+              page(
+                  connection,
+                  queries.sql(variant, true),
+                  ArticleListQueries.parameters(
+                      tagged ? tag : null,
+                      favorited ? reader : null,
+                      byA ? authorA : null,
+                      new ArticleCursor(first.createdAt(), first.id()),
+                      LIMIT,
+                      0));
+          assertEquals(expected, keysetPage, message + " keyset");
+        }
+      } finally {
+        connection.rollback();
+      }
+    }
+  }
+
+  private static void execute(Connection connection, String sql, Object... params)
+      throws SQLException {
+    try (var st = connection.prepareStatement(sql)) {
+      for (int i = 0; i < params.length; i++) {
+        st.setObject(i + 1, params[i]);
+      }
+      st.executeUpdate();
+    }
+  }
+
+  /** The article ids of the page, read from the id column after the article and author JSON. */
+  private static List<UUID> page(Connection connection, String sql, List<Object> params)
+      throws SQLException {
+    try (var st = connection.prepareStatement(sql)) {
+      for (int i = 0; i < params.size(); i++) {
+        st.setObject(i + 1, params.get(i));
+      }
+      var ids = new ArrayList<UUID>();
+      try (var rs = st.executeQuery()) {
+        while (rs.next()) {
+          ids.add(rs.getObject(3, UUID.class));
+        }
+      }
+      return ids;
+    }
+  }
+
+  @Test
+  void variantIndex() {
+    assertEquals(0, ArticleListQueries.variant(false, false, false));
+    assertEquals(7, ArticleListQueries.variant(true, true, true));
+    assertEquals(
+        8, queries.variants().stream().map(ArticleListQueries.Variant::name).distinct().count());
+  }
+
+  private static long placeholders(String sql) {
+    return sql.chars().filter(c -> c == '?').count();
+  }
+
+  /** The part of the articles CTE between the main FROM and the ORDER BY. */
+  private static String filterClause(String sql) {
+    var from = sql.indexOf("FROM realworld.article\n");
+    var order = sql.indexOf("ORDER BY realworld.article.created_at", from);
+    return sql.substring(from + "FROM realworld.article\n".length(), order);
+  }
+
+  private static int topLevelCount(String sql, String keyword) {
+    var count = 0;
+    var depth = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      var c = sql.charAt(i);
+      if (c == '(') depth++;
+      else if (c == ')') depth--;
+      else if (depth == 0 && sql.startsWith(keyword + " ", i)) count++;
+    }
+    return count;
+  }
+}
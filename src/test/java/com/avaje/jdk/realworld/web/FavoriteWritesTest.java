@@ -0,0 +1,193 @@
+package com.avaje.jdk.realworld.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.avaje.jdk.realworld.TestDatabase;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class FavoriteWritesTest {
+
+  private final FavoriteWrites writes = new FavoriteWrites();
+  private final UUID user = UUID.randomUUID();
+  private final UUID article = UUID.randomUUID();
+
+  @Test
+  void collapsedToLatestState() {
+    var key = new FavoriteWrites.Key(user, article);
+    assertTrue(writes.enqueue(key, true));
+    assertTrue(writes.enqueue(key, false));
+    assertTrue(writes.enqueue(key, true));
+
+    assertEquals(1, writes.queueDepth());
+    assertEquals(Boolean.TRUE, writes.pending(user, article));
+  }
+
+  @Test
+  void pendingOfOtherPairs() {
+    writes.enqueue(new FavoriteWrites.Key(user, article), false);
+
+    assertEquals(Boolean.FALSE, writes.pending(user, article));
+    assertNull(writes.pending(user, UUID.randomUUID()));
+    assertNull(writes.pending(UUID.randomUUID(), article));
+  }
+
+  @Test
+  void drain() {
+    var other = new FavoriteWrites.Key(UUID.randomUUID(), article);
+    writes.enqueue(new FavoriteWrites.Key(user, article), true);
+    writes.enqueue(other, false);
+
+    Map<FavoriteWrites.Key, Boolean> batch = new HashMap<>();
+    writes.drain(batch);
+
+    assertEquals(Map.of(new FavoriteWrites.Key(user, article), true, other, false), batch);
+    assertEquals(0, writes.queueDepth());
+    assertNull(writes.pending(user, article));
+  }
+
+  /**
+   * The flush statements against the migrated database, see {@link TestDatabase}, in a
+   * transaction that is rolled back: favorites_count follows the rows added and removed, and pairs
+   * whose article or user is gone are skipped rather than failing the batch.
+   */
+  @Test
+  void batchStatements() throws SQLException {
+    try (var connection = TestDatabase.connect()) {
+      connection.setAutoCommit(false);
+      try {
+        var jake = insertUser(connection);
+        var jane = insertUser(connection);
+        var first = insertArticle(connection, jake);
+        var second = insertArticle(connection, jake);
+        var deleted = insertArticle(connection, jake);
+        var deletedUser = insertUser(connection);
+        execute(connection, "delete from realworld.article where id = ?", deleted);
+        execute(connection, "delete from realworld.user where id = ?", deletedUser);
+
+        assertEquals(
+            3,
+            batch(
+                connection,
+                FavoriteWrites.FAVORITE_BATCH_SQL,
+                List.of(jake, jane, jane, jane, deletedUser),
+                List.of(first, first, second, deleted, second)));
+        assertEquals(2, favoritesCount(connection, first));
+        assertEquals(1, favoritesCount(connection, second));
+
+        // already favorited pairs are left alone
+        assertEquals(
+            0,
+            batch(
+                connection,
+                FavoriteWrites.FAVORITE_BATCH_SQL,
+                List.of(jake, jane),
+                List.of(first, second)));
+        assertEquals(2, favoritesCount(connection, first));
+
+        assertEquals(
+            2,
+            batch(
+                connection,
+                FavoriteWrites.UNFAVORITE_BATCH_SQL,
+                List.of(jake, jane, jake, jane),
+                List.of(first, second, second, deleted)));
+        assertEquals(1, favoritesCount(connection, first));
+        assertEquals(0, favoritesCount(connection, second));
+        assertEquals(1, favorites(connection, jane, first));
+        assertEquals(0, favorites(connection, jane, second));
+
+        // a single pair, as written when a batch fails
+        assertEquals(
+            1,
+            batch(connection, FavoriteWrites.FAVORITE_BATCH_SQL, List.of(jake), List.of(second)));
+        assertEquals(
+            0,
+            batch(connection, FavoriteWrites.FAVORITE_BATCH_SQL, List.of(jake), List.of(deleted)));
+        assertEquals(1, favoritesCount(connection, second));
+      } finally {
+        connection.rollback();
+      }
+    }
+  }
+
+  private static long batch(
+      Connection connection, String sql, List<UUID> userIds, List<UUID> articleIds)
+      throws SQLException {
+    try (var st = connection.prepareStatement(sql)) {
+      st.setArray(1, connection.createArrayOf("uuid", userIds.toArray()));
+      st.setArray(2, connection.createArrayOf("uuid", articleIds.toArray()));
+      try (var rs = st.executeQuery()) {
+        rs.next();
+        return rs.getLong(1);
+      }
+    }
+  }
+
+  private static UUID insertUser(Connection connection) throws SQLException {
+    var id = UUID.randomUUID();
+    execute(
+        connection,
+        "insert into realworld.user(id, username, password_hash, email)"
+            + " values (?, ?, '\\x00', ? || '@example.com')",
+        id,
+        "favorite-writes-" + id,
+        "favorite-writes-" + id);
+    return id;
+  }
+
+  private static UUID insertArticle(Connection connection, UUID authorId) throws SQLException {
+    var id = UUID.randomUUID();
+    execute(
+        connection,
+        "insert into realworld.article(id, user_id, slug, title) values (?, ?, ?, 'favorites')",
+        id,
+        authorId,
+        "favorite-writes-" + id);
+    return id;
+  }
+
+  private static int favoritesCount(Connection connection, UUID articleId) throws SQLException {
+    return count(
+        connection, "select favorites_count from realworld.article where id = ?", articleId);
+  }
+
+  private static int favorites(Connection connection, UUID userId, UUID articleId)
+      throws SQLException {
+    return count(
+        connection,
+        "select count(*) from realworld.favorite where user_id = ? and article_id = ?",
+        userId,
+        articleId);
+  }
+
+  private static int count(Connection connection, String sql, Object... params)
+      throws SQLException {
+    try (var st = connection.prepareStatement(sql)) {
+      for (int i = 0; i < params.length; i++) {
+        st.setObject(i + 1, params[i]);
+      }
+      try (var rs = st.executeQuery()) {
+        rs.next();
+        return rs.getInt(1);
+      }
+    }
+  }
+
+  private static void execute(Connection connection, String sql, Object... params)
+      throws SQLException {
+    try (var st = connection.prepareStatement(sql)) {
+      for (int i = 0; i < params.length; i++) {
+        st.setObject(i + 1, params[i]);
+      }
+      st.executeUpdate();
+    }
+  }
+}
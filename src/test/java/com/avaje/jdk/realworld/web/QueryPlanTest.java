@@ -0,0 +1,426 @@
+package com.avaje.jdk.realworld.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.avaje.jdk.realworld.TestDatabase;
+import io.avaje.jsonb.Jsonb;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * {@code EXPLAIN (FORMAT JSON)} of the handler statements over a seeded dataset, asserting the
+ * indexes they rely on and bounds on the planner's row estimates, so a migration or query edit
+ * that turns a lookup into a sequential scan fails the build.
+ *
+ * <p>Runs against {@code POSTGRES_URL}, the database of application.properties, with the
+ * migrations applied, see {@link TestDatabase} for when it's skipped. The dataset is seeded and
+ * analyzed in a transaction that is rolled back at the end.
+ */
+class QueryPlanTest {
+
+  private static final int USERS = 2_000;
+  private static final int ARTICLES_PER_USER = 10;
+  private static final int FOLLOWS_PER_USER = 10;
+  private static final int HOT_COMMENTS = 20_000;
+
+  /** Tables large enough in production that a sequential scan of them is a regression. */
+  private static final List<String> LARGE =
+      List.of("article", "article_tag", "comment", "favorite", "feed_entry", "follow");
+
+  private static final String SEED_SQL =
+      """
+      insert into realworld.user (id, username, password_hash, email)
+      select md5('plan-user-' || g)::uuid, 'plan-user-' || g, '\\x00',
+             'plan-user-' || g || '@example.com'
+      from generate_series(1, %1$d) g;
+
+      insert into realworld.tag (id, name)
+      select md5('plan-tag-' || g)::uuid, 'plan-tag-' || g
+      from generate_series(1, 200) g;
+
+      insert into realworld.article (id, user_id, slug, title, description, body, created_at)
+      select md5('plan-article-' || g)::uuid, md5('plan-user-' || (1 + g %% %1$d))::uuid,
+             'plan-article-' || g, 'article ' || g || ' about dragons ' || (g %% 97),
+             'description ' || (g %% 31), 'body of article ' || g,
+             now() - make_interval(secs => g)
+      from generate_series(1, %1$d * %2$d) g;
+
+      insert into realworld.article_tag (article_id, tag_id)
+      select md5('plan-article-' || g)::uuid, md5('plan-tag-' || (1 + (g * t) %% 200))::uuid
+      from generate_series(1, %1$d * %2$d) g, generate_series(1, 3) t;
+
+      insert into realworld.follow (from_user_id, to_user_id)
+      select md5('plan-user-' || u)::uuid, md5('plan-user-' || (1 + (u + f * 7) %% %1$d))::uuid
+      from generate_series(1, %1$d) u, generate_series(1, %3$d) f
+      on conflict do nothing;
+
+      insert into realworld.favorite (article_id, user_id)
+      select md5('plan-article-' || (1 + (u * 13 + f) %% (%1$d * %2$d)))::uuid,
+             md5('plan-user-' || u)::uuid
+      from generate_series(1, %1$d) u, generate_series(1, 20) f
+      on conflict do nothing;
+
+      insert into realworld.feed_entry (user_id, created_at, article_id)
+      select realworld.follow.from_user_id, realworld.article.created_at, realworld.article.id
+      from realworld.follow
+      join realworld.article on realworld.article.user_id = realworld.follow.to_user_id
+      where realworld.follow.from_user_id in (
+          select md5('plan-user-' || g)::uuid from generate_series(1, %1$d) g
+      )
+      on conflict do nothing;
+
+      insert into realworld.comment (article_id, user_id, body, created_at)
+      select case when g <= %4$d then md5('plan-article-1')::uuid
+                  else md5('plan-article-' || (1 + g %% (%1$d * %2$d)))::uuid end,
+             md5('plan-user-' || (1 + g %% %1$d))::uuid, 'comment ' || g,
+             now() - make_interval(secs => g)
+      from generate_series(1, %4$d * 2) g;
+
+      update realworld.article
+      set comments_count = (
+          select count(*) from realworld.comment where article_id = realworld.article.id
+      )
+      where slug = 'plan-article-1';
+
+      analyze realworld.user, realworld.tag, realworld.article, realworld.article_tag,
+          realworld.follow, realworld.favorite, realworld.feed_entry, realworld.comment;
+      """
+          .formatted(USERS, ARTICLES_PER_USER, FOLLOWS_PER_USER, HOT_COMMENTS);
+
+  private static final Jsonb JSONB = Jsonb.builder().build();
+
+  private static Connection connection;
+
+  private static final UUID VIEWER = uuid("plan-user-1");
+  private static final UUID AUTHOR = uuid("plan-user-2");
+  private static final UUID ARTICLE = uuid("plan-article-1");
+  private static final UUID TAG = uuid("plan-tag-1");
+
+  @BeforeAll
+  static void seed() throws SQLException {
+    connection = TestDatabase.connect();
+    connection.setAutoCommit(false);
+    try (var st = connection.createStatement()) {
+      st.execute(SEED_SQL);
+    }
+  }
+
+  @AfterAll
+  static void rollback() throws SQLException {
+    if (connection != null) {
+      connection.rollback();
+      connection.close();
+    }
+  }
+
+  @Test
+  void listArticles() throws SQLException {
+    var queries = new ArticleListQueries(null);
+    var cursor = new ArticleCursor(Instant.now().minusSeconds(5_000), ARTICLE);
+    for (int variant = 0; variant < ArticleListQueries.VARIANTS; variant++) {
+      var tag = (variant & ArticleListQueries.TAG) != 0;
+      var favorited = (variant & ArticleListQueries.FAVORITED) != 0;
+      var author = (variant & ArticleListQueries.AUTHOR) != 0;
+      for (var keyset : new boolean[] {false, true}) {
+        var plan =
+            explain(
+                queries.sql(variant, keyset),
+                ArticleListQueries.parameters(
+                        tag ? TAG : null,
+                        favorited ? uuid("plan-user-3") : null,
+                        author ? AUTHOR : null,
+                        keyset ? cursor : null,
+                        20,
+                        0)
+                    .toArray());
+
+        plan.assertNoSeqScan().assertLimitAtMost(20);
+        // combined filters are driven by whichever is most selective
+        switch (variant) {
+          case 0 -> plan.assertIndex("article_created_at_id_idx");
+          case ArticleListQueries.TAG -> plan.assertIndex("article_tag_tag_id_idx");
+          case ArticleListQueries.FAVORITED -> plan.assertIndex("favorite_user_id_idx");
+          case ArticleListQueries.AUTHOR -> plan.assertIndex("article_user_id_created_at_id_idx");
+          default -> {}
+        }
+      }
+    }
+  }
+
+  @Test
+  void feed() throws SQLException {
+    for (var cursor : new ArticleCursor[] {null, new ArticleCursor(Instant.now(), ARTICLE)}) {
+      var sql = ArticleController.feedQuery(VIEWER, cursor, 20, 0);
+      var plan = explain(sql.sql(), sql.parameters().toArray());
+      plan.assertNoSeqScan();
+      plan.assertIndex("feed_entry_pkey");
+      plan.assertLimitAtMost(20);
+      plan.assertScanRowsAtMost("feed_entry", USERS * ARTICLES_PER_USER / 10);
+    }
+  }
+
+  @Test
+  void search() throws SQLException {
+    for (var cursor : new SearchCursor[] {null, new SearchCursor(0.1f, ARTICLE)}) {
+      var sql = ArticleController.searchQuery("dragons 42", cursor, 20);
+      var plan = explain(sql.sql(), sql.parameters().toArray());
+      plan.assertNoSeqScan();
+      plan.assertIndex("article_search_idx");
+      plan.assertLimitAtMost(20);
+    }
+  }
+
+  @Test
+  void pageFavorites() throws SQLException {
+    var page = new Object[20];
+    for (int i = 0; i < page.length; i++) {
+      page[i] = uuid("plan-article-" + i);
+    }
+    explain(ArticlePages.FAVORITED_SQL, VIEWER, connection.createArrayOf("uuid", page))
+        .assertNoSeqScan();
+  }
+
+  @Test
+  void article() throws SQLException {
+    explain(ArticleJsonCache.VIEWER_SQL + "WHERE realworld.article.id = ?", VIEWER, ARTICLE)
+        .assertNoSeqScan()
+        .assertIndex("article_pkey");
+    explain(ArticleJsonCache.SHARED_SQL, ARTICLE).assertNoSeqScan().assertIndex("article_pkey");
+    explain(IdLookups.ARTICLE_ID_SQL, "plan-article-1")
+        .assertNoSeqScan()
+        .assertIndex("article_slug_key");
+  }
+
+  @Test
+  void writeArticle() throws SQLException {
+    var tags = connection.createArrayOf("uuid", new Object[] {TAG});
+    explain(
+            ArticleController.CREATE_ARTICLE_SQL,
+            UUID.randomUUID(),
+            AUTHOR,
+            "title",
+            "plan-new",
+            "",
+            "",
+            tags,
+            1000,
+            AUTHOR,
+            1001,
+            tags,
+            AUTHOR)
+        .assertNoSeqScan();
+    var deleted = uuid("plan-article-2");
+    explain(ArticleController.DELETE_ARTICLE_SQL, deleted, "plan-article-2", AUTHOR)
+        .assertNoSeqScan()
+        .assertIndex("article_pkey");
+    for (var sql : List.of(FavoriteWrites.FAVORITE_SQL, FavoriteWrites.UNFAVORITE_SQL)) {
+      explain(sql, ARTICLE, "plan-article-1", VIEWER).assertNoSeqScan();
+    }
+    explain(FavoriteWrites.SLUG_MATCH_SQL, ARTICLE, "plan-article-1").assertNoSeqScan();
+  }
+
+  @Test
+  void favoriteBatches() throws SQLException {
+    var users = new Object[50];
+    var articles = new Object[50];
+    for (int i = 0; i < users.length; i++) {
+      users[i] = uuid("plan-user-" + (i + 1));
+      articles[i] = uuid("plan-article-" + (i * 7 + 1));
+    }
+    var batches = List.of(FavoriteWrites.FAVORITE_BATCH_SQL, FavoriteWrites.UNFAVORITE_BATCH_SQL);
+    for (var sql : batches) {
+      explain(
+              sql,
+              connection.createArrayOf("uuid", users),
+              connection.createArrayOf("uuid", articles))
+          .assertNoSeqScan();
+    }
+  }
+
+  @Test
+  void comments() throws SQLException {
+    var cursor = new ArticleCursor(Instant.now().minusSeconds(100), ARTICLE);
+    explain(ArticleController.COMMENTS_FIRST_VERSION_SQL, 20, ARTICLE)
+        .assertNoSeqScan()
+        .assertIndex("comment_article_id_created_at_id_idx")
+        .assertLimitAtMost(20);
+    explain(
+            ArticleController.COMMENTS_NEXT_VERSION_SQL,
+            cursor.createdAtParam(),
+            cursor.id(),
+            20,
+            ARTICLE)
+        .assertNoSeqScan()
+        .assertIndex("comment_article_id_created_at_id_idx");
+    var following = connection.createArrayOf("uuid", new Object[] {AUTHOR});
+    explain(ArticleController.COMMENTS_FIRST_PAGE_SQL, following, ARTICLE, 20)
+        .assertNoSeqScan()
+        .assertIndex("comment_article_id_created_at_id_idx")
+        .assertLimitAtMost(20);
+    explain(
+            ArticleController.COMMENTS_NEXT_PAGE_SQL,
+            following,
+            ARTICLE,
+            cursor.createdAtParam(),
+            cursor.id(),
+            20)
+        .assertNoSeqScan()
+        .assertIndex("comment_article_id_created_at_id_idx")
+        .assertLimitAtMost(20);
+    explain(ArticleController.COMMENT_SQL, false, UUID.randomUUID())
+        .assertNoSeqScan()
+        .assertIndex("comment_pkey");
+    explain(
+            ArticleController.ADD_COMMENT_SQL,
+            UUID.randomUUID(),
+            VIEWER,
+            "body",
+            ARTICLE,
+            "plan-article-1")
+        .assertNoSeqScan();
+    explain(ArticleController.DELETE_COMMENT_SQL, UUID.randomUUID(), VIEWER, ARTICLE)
+        .assertNoSeqScan()
+        .assertIndex("comment_pkey");
+  }
+
+  @Test
+  void profiles() throws SQLException {
+    explain(IdLookups.USER_ID_SQL, "plan-user-2").assertIndex("user_username_key");
+    explain(ProfilesController.PROFILE_SQL, AUTHOR)
+        .assertNoSeqScan()
+        .assertIndex("user_pkey");
+    explain(ProfilesController.PROFILE_VERSION_SQL, AUTHOR)
+        .assertNoSeqScan()
+        .assertIndex("user_pkey");
+    explain(ProfilesController.FOLLOW_SQL, AUTHOR, "plan-user-2", VIEWER, 100)
+        .assertNoSeqScan()
+        .assertIndex("article_user_id_created_at_id_idx");
+    explain(ProfilesController.UNFOLLOW_SQL, AUTHOR, "plan-user-2", VIEWER)
+        .assertNoSeqScan()
+        .assertIndex("feed_entry_pkey");
+  }
+
+  @Test
+  void users() throws SQLException {
+    explain(UserController.DUPLICATE_USER_SQL, "plan-user-2", "plan-user-2@example.com")
+        .assertIndex("user_username_key")
+        .assertIndex("user_email_key");
+    // the query bean statements of loginHandler and getCurrentUserHandler
+    explain(
+            "select t0.id, t0.email, t0.bio, t0.image, t0.password_hash"
+                + " from realworld.user t0 where t0.email = ?::citext",
+            "plan-user-2@example.com")
+        .assertIndex("user_email_key")
+        .assertScanRowsAtMost("user", 1);
+    explain(
+            "select t0.id, t0.username, t0.email, t0.bio, t0.image"
+                + " from realworld.user t0 where t0.id = ?",
+            AUTHOR)
+        .assertIndex("user_pkey");
+  }
+
+  @Test
+  void explainDetectsSeqScan() throws SQLException {
+    var plan = explain("select id from realworld.comment where body = ?", "comment 1");
+    assertFalse(plan.scans("Seq Scan", "comment").isEmpty());
+  }
+
+  private static Plan explain(String sql, Object... params) throws SQLException {
+    try (var st = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + sql)) {
+      for (int i = 0; i < params.length; i++) {
+        st.setObject(i + 1, params[i]);
+      }
+      try (var rs = st.executeQuery()) {
+        assertTrue(rs.next());
+        List<?> root = (List<?>) JSONB.type(Object.class).fromJson(rs.getString(1));
+        var nodes = new ArrayList<Map<?, ?>>();
+        collect(root, nodes);
+        assertFalse(nodes.isEmpty());
+        return new Plan(sql, nodes);
+      }
+    }
+  }
+
+  private static void collect(Object json, List<Map<?, ?>> nodes) {
+    if (json instanceof Map<?, ?> map) {
+      if (map.containsKey("Node Type")) {
+        nodes.add(map);
+      }
+      map.values().forEach(value -> collect(value, nodes));
+    } else if (json instanceof List<?> list) {
+      list.forEach(value -> collect(value, nodes));
+    }
+  }
+
+  private record Plan(String sql, List<Map<?, ?>> nodes) {
+
+    List<Map<?, ?>> scans(String nodeType, String relation) {
+      return nodes.stream()
+          .filter(node -> nodeType.equals(node.get("Node Type")))
+          .filter(node -> relation.equals(node.get("Relation Name")))
+          .toList();
+    }
+
+    Plan assertNoSeqScan() {
+      for (var relation : LARGE) {
+        assertEquals(List.of(), scans("Seq Scan", relation), relation + " in\n" + sql);
+      }
+      return this;
+    }
+
+    Plan assertIndex(String index) {
+      assertTrue(
+          nodes.stream().anyMatch(node -> index.equals(node.get("Index Name"))),
+          index + " not used by\n" + sql);
+      return this;
+    }
+
+    Plan assertLimitAtMost(int rows) {
+      nodes.stream()
+          .filter(node -> "Limit".equals(node.get("Node Type")))
+          .forEach(node -> assertTrue(rows(node) <= rows, "Limit estimate in\n" + sql));
+      return this;
+    }
+
+    /** Bound the estimated rows of every scan of the relation. */
+    Plan assertScanRowsAtMost(String relation, double rows) {
+      nodes.stream()
+          .filter(node -> relation.equals(node.get("Relation Name")))
+          .forEach(
+              node ->
+                  assertTrue(
+                      rows(node) <= rows,
+                      relation + " estimate " + rows(node) + " > " + rows + " in\n" + sql));
+      return this;
+    }
+
+    private static double rows(Map<?, ?> node) {
+      return ((Number) node.get("Plan Rows")).doubleValue();
+    }
+  }
+
+  private static UUID uuid(String key) {
+    try {
+      var md5 = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+      var hex = HexFormat.of().formatHex(md5);
+      return UUID.fromString(
+          hex.replaceFirst("(.{8})(.{4})(.{4})(.{4})(.{12})", "$1-$2-$3-$4-$5"));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
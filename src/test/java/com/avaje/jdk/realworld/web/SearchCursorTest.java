@@ -0,0 +1,38 @@
+package com.avaje.jdk.realworld.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class SearchCursorTest {
+
+  @Test
+  void roundTrip() {
+    var cursor = new SearchCursor(0.0607927f, UUID.randomUUID());
+    assertEquals(cursor, SearchCursor.decode(cursor.encode()));
+
+    var tiny = new SearchCursor(1e-20f, UUID.randomUUID());
+    assertEquals(tiny, SearchCursor.decode(tiny.encode()));
+  }
+
+  @Test
+  void invalid() {
+    assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("not a cursor"));
+  }
+
+  @Test
+  void searchQueryParameters() {
+    var first = ArticleController.searchQuery("dragons", null, 20);
+    assertEquals(placeholders(first.sql()), first.parameters().size());
+
+    var next =
+        ArticleController.searchQuery("dragons", new SearchCursor(0.5f, UUID.randomUUID()), 20);
+    assertEquals(placeholders(next.sql()), next.parameters().size());
+  }
+
+  private static long placeholders(String sql) {
+    return sql.chars().filter(c -> c == '?').count();
+  }
+}
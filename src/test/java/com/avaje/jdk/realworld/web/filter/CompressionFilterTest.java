@@ -0,0 +1,87 @@
+package com.avaje.jdk.realworld.web.filter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.avaje.jdk.realworld.web.filter.CompressionFilter.Encoding;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Test;
+
+class CompressionFilterTest {
+
+  private static final byte[] BODY =
+      "{\"articles\": [{\"slug\": \"how-to-train-your-dragon\"}], \"articlesCount\": 1}"
+          .repeat(50)
+          .getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  void negotiate() {
+    assertNull(CompressionFilter.negotiate(null));
+    assertNull(CompressionFilter.negotiate("identity"));
+    assertNull(CompressionFilter.negotiate("gzip;q=0, deflate;q=0"));
+    assertEquals(Encoding.GZIP, CompressionFilter.negotiate("gzip, deflate, br"));
+    assertEquals(Encoding.GZIP, CompressionFilter.negotiate("*"));
+    assertEquals(Encoding.DEFLATE, CompressionFilter.negotiate("gzip;q=0.5, deflate"));
+    assertEquals(Encoding.DEFLATE, CompressionFilter.negotiate("gzip;q=0, *"));
+  }
+
+  @Test
+  void compressible() {
+    assertTrue(CompressionFilter.compressible("application/json; charset=utf-8"));
+    assertTrue(CompressionFilter.compressible("text/html"));
+    assertFalse(CompressionFilter.compressible("image/png"));
+    assertFalse(CompressionFilter.compressible(null));
+  }
+
+  @Test
+  void gzipRoundTripReusesDeflater() throws IOException {
+    var pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, true, 1);
+    for (int i = 0; i < 3; i++) {
+      var wire = new ByteArrayOutputStream();
+      try (var out = CompressingOutputStream.gzip(wire, pool)) {
+        out.write(BODY);
+      }
+      assertTrue(wire.size() < BODY.length);
+      try (var in = new GZIPInputStream(new ByteArrayInputStream(wire.toByteArray()))) {
+        assertArrayEquals(BODY, in.readAllBytes());
+      }
+    }
+  }
+
+  @Test
+  void poolReusesDeflater() {
+    var pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, true, 1);
+    var first = pool.borrow();
+    var second = pool.borrow();
+    pool.release(first);
+    pool.release(second);
+
+    assertSame(first, pool.borrow());
+    assertNotSame(first, pool.borrow());
+  }
+
+  @Test
+  void deflateRoundTrip() throws IOException {
+    var pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, false, 1);
+    var wire = new ByteArrayOutputStream();
+    try (var out = CompressingOutputStream.deflate(wire, pool)) {
+      out.write(BODY, 0, 10);
+      out.write(BODY[10]);
+      out.write(BODY, 11, BODY.length - 11);
+    }
+    try (var in = new InflaterInputStream(new ByteArrayInputStream(wire.toByteArray()))) {
+      assertArrayEquals(BODY, in.readAllBytes());
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.avaje.jdk.realworld.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedCacheTest {
+
+  private final BoundedCache<String, String> cache = new BoundedCache<>(2, 60_000);
+
+  @Test
+  void hitAndMiss() {
+    assertNull(cache.get("jake"));
+    cache.put("jake", "id", cache.generation());
+
+    assertEquals("id", cache.get("jake"));
+    assertEquals(1, cache.hits());
+    assertEquals(1, cache.misses());
+  }
+
+  @Test
+  void expired() {
+    var expiring = new BoundedCache<String, String>(2, 0);
+    expiring.put("jake", "id", expiring.generation());
+    cache.put("past", "id", System.currentTimeMillis() - 1, cache.generation());
+
+    assertNull(expiring.get("jake"));
+    assertNull(cache.get("past"));
+    assertEquals(0, expiring.size() + cache.size());
+  }
+
+  @Test
+  void evict() {
+    cache.put("old-slug", "id", cache.generation());
+    cache.put("other", "other-id", cache.generation());
+
+    cache.evict("old-slug");
+
+    assertNull(cache.get("old-slug"));
+    assertNotNull(cache.get("other"));
+  }
+
+  @Test
+  void evictIf() {
+    cache.put("a", "id", cache.generation());
+    cache.put("b", "other-id", cache.generation());
+
+    cache.evictIf("id"::equals);
+
+    assertNull(cache.get("a"));
+    assertEquals("other-id", cache.get("b"));
+  }
+
+  @Test
+  void evictionDuringLoadSkipsPut() {
+    var generation = cache.generation();
+
+    cache.evict("jake");
+    cache.put("jake", "id", generation);
+
+    assertNull(cache.get("jake"));
+  }
+
+  @Test
+  void clearSkipsPutsLoadedBefore() {
+    var generation = cache.generation();
+    cache.put("a", "id", generation);
+
+    cache.clear();
+    cache.put("b", "id", generation);
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void bounded() {
+    var generation = cache.generation();
+    cache.put("a", "1", generation);
+    cache.put("b", "2", generation);
+    cache.put("c", "3", generation);
+
+    assertEquals(2, cache.size());
+    assertEquals("3", cache.get("c"));
+  }
+
+  @Test
+  void fullCacheFreesATenthAtOnce() {
+    var large = new BoundedCache<Integer, Integer>(100, 60_000);
+    for (int i = 0; i < 100; i++) {
+      large.put(i, i, large.generation());
+    }
+    assertEquals(100, large.size());
+
+    // the insert that finds the map full makes room for the next nine as well
+    large.put(100, 100, large.generation());
+    assertEquals(91, large.size());
+    for (int i = 101; i < 110; i++) {
+      large.put(i, i, large.generation());
+    }
+    assertEquals(100, large.size());
+    assertEquals(109, large.get(109));
+  }
+
+  @Test
+  void fullCacheDropsExpiredFirst() {
+    var now = System.currentTimeMillis();
+    var large = new BoundedCache<Integer, Integer>(10, 60_000);
+    for (int i = 0; i < 10; i++) {
+      // the odd entries expire almost at once
+      large.put(i, i, i % 2 == 0 ? Long.MAX_VALUE : now + 20, large.generation());
+    }
+    while (System.currentTimeMillis() <= now + 20) {
+      Thread.onSpinWait();
+    }
+
+    large.put(10, 10, large.generation());
+
+    assertEquals(6, large.size());
+    for (int i = 0; i <= 10; i += 2) {
+      assertEquals(i, large.get(i));
+    }
+  }
+}
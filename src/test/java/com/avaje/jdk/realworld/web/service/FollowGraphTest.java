@@ -0,0 +1,246 @@
+package com.avaje.jdk.realworld.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.avaje.jdk.realworld.TestDatabase;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class FollowGraphTest {
+
+  private final FollowGraph graph = new FollowGraph();
+
+  private final UUID jake = UUID.randomUUID();
+  private final UUID jane = UUID.randomUUID();
+  private final UUID joe = UUID.randomUUID();
+
+  @Test
+  void followAndUnfollow() {
+    assertFalse(graph.following(jake, jane));
+
+    graph.follow(jake, jane);
+    graph.follow(jake, jane);
+
+    assertTrue(graph.following(jake, jane));
+    assertFalse(graph.following(jane, jake));
+    assertFalse(graph.following(null, jane));
+    assertEquals(1, graph.edges());
+
+    graph.unfollow(jake, jane);
+    graph.unfollow(jake, jane);
+
+    assertFalse(graph.following(jake, jane));
+    assertEquals(0, graph.edges());
+  }
+
+  @Test
+  void followedKeepsTheGivenOrder() {
+    graph.follow(jake, jane);
+    graph.follow(jake, joe);
+    var stranger = UUID.randomUUID();
+
+    assertEquals(List.of(joe, jane), graph.followed(jake, List.of(joe, stranger, jane)));
+    assertEquals(List.of(jane), graph.followed(jake, Set.of(jane, stranger)));
+    assertEquals(List.of(), graph.followed(jane, List.of(jake, joe)));
+    assertEquals(List.of(), graph.followed(null, List.of(jane)));
+    assertEquals(List.of(), graph.followed(jake, List.of()));
+  }
+
+  @Test
+  void tableGrows() {
+    var table = new FollowGraph.Graph(16);
+    var ids = new ArrayList<UUID>();
+    for (int i = 0; i < 10_000; i++) {
+      var id = UUID.randomUUID();
+      ids.add(id);
+      assertEquals(i, table.ordinalOrAdd(id));
+    }
+    for (int i = 0; i < ids.size(); i++) {
+      assertEquals(i, table.ordinal(ids.get(i)));
+      assertEquals(i, table.ordinalOrAdd(ids.get(i)));
+    }
+    assertEquals(-1, table.ordinal(UUID.randomUUID()));
+    assertEquals(10_000, table.users());
+  }
+
+  @Test
+  void probesPastCollisions() {
+    var table = new FollowGraph.Graph(16);
+    // the slot is a hash of msb ^ lsb, so all of these land on the same one
+    var colliding = new ArrayList<UUID>();
+    for (long i = 1; i <= 40; i++) {
+      colliding.add(new UUID(i, i ^ 0x5DEECE66DL));
+    }
+    for (var id : colliding.subList(0, 30)) {
+      table.ordinalOrAdd(id);
+    }
+
+    for (int i = 0; i < 30; i++) {
+      assertEquals(i, table.ordinal(colliding.get(i)));
+    }
+    for (var absent : colliding.subList(30, 40)) {
+      assertEquals(-1, table.ordinal(absent));
+    }
+
+    table.apply(new FollowGraph.Change(colliding.get(29), colliding.get(0), true));
+    assertTrue(table.following(colliding.get(29), colliding.get(0)));
+    assertFalse(table.following(colliding.get(0), colliding.get(29)));
+  }
+
+  @Test
+  void bulkLoadSortsAndDeduplicates() {
+    var builder = new FollowGraph.Builder();
+    builder.add(jake, joe);
+    builder.add(jake, jane);
+    builder.add(jake, joe);
+    builder.add(jane, jake);
+
+    var loaded = builder.build();
+
+    assertEquals(3, loaded.edges());
+    assertTrue(loaded.following(jake, joe));
+    assertTrue(loaded.following(jane, jake));
+    assertEquals(List.of(jane, joe), loaded.followed(jake, List.of(jane, jake, joe)));
+  }
+
+  /** Readers never see a torn answer while a writer grows the table and adjacency arrays. */
+  @Test
+  void optimisticReadRacingWriter() throws Exception {
+    graph.follow(jake, jane);
+    var done = new AtomicBoolean();
+    var wrong = new AtomicInteger();
+    var started = new CountDownLatch(1);
+
+    var writer =
+        Thread.ofPlatform()
+            .start(
+                () -> {
+                  started.countDown();
+                  var previous = joe;
+                  for (int i = 0; i < 50_000; i++) {
+                    var user = UUID.randomUUID();
+                    graph.follow(user, jane);
+                    graph.follow(user, previous);
+                    graph.follow(jake, user);
+                    graph.unfollow(jake, user);
+                    if (i % 2 == 0) {
+                      graph.unfollow(user, jane);
+                    }
+                    previous = user;
+                  }
+                  done.set(true);
+                });
+
+    var readers = new ArrayList<Thread>();
+    for (int r = 0; r < 4; r++) {
+      readers.add(
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    while (!done.get()) {
+                      if (!graph.following(jake, jane)
+                          || graph.following(jane, jake)
+                          || !graph.followed(jake, List.of(joe, jane)).equals(List.of(jane))) {
+                        wrong.incrementAndGet();
+                      }
+                    }
+                  }));
+    }
+    started.await();
+    writer.join();
+    for (var reader : readers) {
+      reader.join();
+    }
+
+    assertEquals(0, wrong.get());
+    assertEquals(1 + 100_000 - 25_000, graph.edges());
+  }
+
+  /**
+   * Follows and unfollows reach the graph through the trigger written follow_change rows, run
+   * against the migrated database, see {@link TestDatabase}, in a transaction that is rolled back.
+   */
+  @Test
+  void pollsTheChangeLog() throws SQLException {
+    try (var connection = TestDatabase.connect()) {
+      connection.setAutoCommit(false);
+      try {
+        for (var user : List.of(jake, jane)) {
+          execute(
+              connection,
+              "insert into realworld.user(id, username, password_hash, email)"
+                  + " values (?, ?, '\\x00', ? || '@example.com')",
+              user,
+              "follow-graph-" + user,
+              "follow-graph-" + user);
+        }
+        var since = now(connection);
+
+        execute(
+            connection,
+            "insert into realworld.follow(from_user_id, to_user_id) values (?, ?)",
+            jake,
+            jane);
+        poll(connection, since);
+        assertTrue(graph.following(jake, jane));
+
+        execute(
+            connection,
+            "delete from realworld.follow where from_user_id = ? and to_user_id = ?",
+            jake,
+            jane);
+        poll(connection, since);
+        assertFalse(graph.following(jake, jane));
+
+        // both changes are read again by an overlapping poll, the pair keeps its current state
+        poll(connection, since);
+        assertFalse(graph.following(jake, jane));
+      } finally {
+        connection.rollback();
+      }
+    }
+  }
+
+  private void poll(Connection connection, Timestamp since) throws SQLException {
+    var changes = new ArrayList<FollowGraph.Change>();
+    Timestamp polledAt = null;
+    try (var st = connection.prepareStatement(FollowGraph.CHANGES_SQL)) {
+      st.setTimestamp(1, since);
+      try (var rs = st.executeQuery()) {
+        while (rs.next()) {
+          polledAt = FollowGraph.polled(rs, changes);
+        }
+      }
+    }
+    graph.applyPolled(polledAt, changes);
+  }
+
+  private static Timestamp now(Connection connection) throws SQLException {
+    try (var st = connection.createStatement();
+        var rs = st.executeQuery("select clock_timestamp()")) {
+      rs.next();
+      return rs.getTimestamp(1);
+    }
+  }
+
+  private static void execute(Connection connection, String sql, Object... params)
+      throws SQLException {
+    try (var st = connection.prepareStatement(sql)) {
+      for (int i = 0; i < params.length; i++) {
+        st.setObject(i + 1, params[i]);
+      }
+      st.executeUpdate();
+    }
+  }
+}
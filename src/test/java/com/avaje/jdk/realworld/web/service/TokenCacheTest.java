@@ -0,0 +1,52 @@
+package com.avaje.jdk.realworld.web.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Instant;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class TokenCacheTest {
+
+  private final TokenCache cache = new TokenCache(2, 60);
+
+  @Test
+  void hit() {
+    var userId = UUID.randomUUID();
+    var digest = TokenCache.digest("token");
+
+    cache.put(digest, userId, Instant.now().plusSeconds(600), cache.generation());
+
+    assertEquals(userId, cache.get(digest));
+  }
+
+  @Test
+  void expiredTokenNotCached() {
+    var digest = TokenCache.digest("token");
+    cache.put(digest, UUID.randomUUID(), Instant.now().minusSeconds(1), cache.generation());
+
+    assertNull(cache.get(digest));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void evictUser() {
+    var userId = UUID.randomUUID();
+    var other = UUID.randomUUID();
+    cache.put("a", userId, null, cache.generation());
+    cache.put("b", other, null, cache.generation());
+
+    cache.evictUser(userId);
+
+    assertNull(cache.get("a"));
+    assertEquals(other, cache.get("b"));
+  }
+
+  @Test
+  void digest() {
+    assertEquals(TokenCache.digest("token"), TokenCache.digest("token"));
+    assertNotEquals(TokenCache.digest("token"), TokenCache.digest("other"));
+  }
+}